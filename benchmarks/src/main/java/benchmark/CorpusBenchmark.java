@@ -0,0 +1,51 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Common settings for every pipeline stage: one run per program of the
+// corpus in src/main/resources/corpus. Programs are copied to temporary
+// files because LexicalAnalysis reads from a file name.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class CorpusBenchmark {
+
+    @Param({ "loops", "strings", "collections", "switch" })
+    public String program;
+
+    protected String file;
+
+    @Setup
+    public void extract() throws IOException {
+        Path path = Files.createTempFile(program, ".mg");
+        path.toFile().deleteOnExit();
+        try (InputStream in = getClass().getResourceAsStream("/corpus/" + program + ".mg")) {
+            if (in == null)
+                throw new IllegalArgumentException("Unknown program: " + program);
+
+            Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        file = path.toString();
+    }
+
+}
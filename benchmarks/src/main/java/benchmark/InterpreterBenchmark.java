@@ -0,0 +1,55 @@
+package benchmark;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import interpreter.ExecutionContext;
+import interpreter.bytecode.CompiledScript;
+import interpreter.bytecode.Generator;
+import interpreter.command.Command;
+import interpreter.util.Hoister;
+import interpreter.util.Optimizer;
+import interpreter.util.Resolver;
+import interpreter.vm.Compiler;
+import interpreter.vm.Machine;
+import lexical.LexicalAnalysis;
+import syntatic.SyntaticAnalysis;
+
+// Full execute: lex, parse and run, the same path mgi takes. The
+// program's output is discarded.
+public class InterpreterBenchmark extends CorpusBenchmark {
+
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    @Param({ "tree", "vm", "bytecode" })
+    public String backend;
+
+    @Benchmark
+    public void execute() {
+        ExecutionContext ctx = new ExecutionContext(InputStream.nullInputStream(), NULL_OUT, false);
+        try (LexicalAnalysis l = new LexicalAnalysis(file)) {
+            SyntaticAnalysis s = new SyntaticAnalysis(l);
+            Command c = s.start();
+            Optimizer.optimize(c);
+            int slots = Resolver.resolve(c);
+            CompiledScript script = backend.equals("bytecode") ?
+                Generator.compile(c, slots, false) : null;
+            if (script != null) {
+                script.run(ctx);
+            } else if (backend.equals("vm")) {
+                Machine.run(Compiler.compile(c, slots, false), ctx);
+            } else {
+                Hoister.hoist(c);
+                ctx.getMemory().frame(slots);
+                c.execute(ctx);
+            }
+        } finally {
+            ctx.getOutput().flush();
+        }
+    }
+
+}
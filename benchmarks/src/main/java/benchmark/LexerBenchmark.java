@@ -0,0 +1,26 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import lexical.Lexeme;
+import lexical.LexicalAnalysis;
+import lexical.TokenType;
+
+// Lex-only: pulls every token of the program.
+public class LexerBenchmark extends CorpusBenchmark {
+
+    @Benchmark
+    public void lex(Blackhole bh) {
+        try (LexicalAnalysis l = new LexicalAnalysis(file)) {
+            Lexeme lex;
+            do {
+                lex = l.nextToken();
+                bh.consume(lex);
+            } while (lex.type != TokenType.END_OF_FILE &&
+                     lex.type != TokenType.INVALID_TOKEN &&
+                     lex.type != TokenType.UNEXPECTED_EOF);
+        }
+    }
+
+}
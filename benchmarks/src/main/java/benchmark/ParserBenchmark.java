@@ -0,0 +1,25 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import interpreter.command.Command;
+import lexical.LexicalAnalysis;
+import syntatic.SyntaticAnalysis;
+
+// Lex+parse: builds the command tree without running it, with the lexer
+// on the parser's thread or pipelined on its own.
+public class ParserBenchmark extends CorpusBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean pipelined;
+
+    @Benchmark
+    public Command parse() {
+        try (LexicalAnalysis l = new LexicalAnalysis(file)) {
+            SyntaticAnalysis s = new SyntaticAnalysis(l, pipelined);
+            return s.start();
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+// Array and map building, indexing and membership tests.
+def a = []
+for (def i = 0; i < 300; i += 1)
+    a += [i * 2]
+def m = [:]
+for (def i = 0; i < 300; i += 1)
+    m['k' + i] = a[i]
+def hits = 0
+for (def i = 0; i < 300; i += 1)
+    if (i in a) hits += 1
+def total = 0
+foreach (def v in values(m))
+    total += v
+def b = [1, 2, 3]
+for (def i = 0; i < 100; i += 1)
+    b[i % 3] = b[(i + 1) % 3] + i
+println(hits + total + size(keys(m)) + b[0])
@@ -0,0 +1,17 @@
+// Numeric loops: counters, comparisons and integer arithmetic.
+def sum = 0, i = 0
+while (i < 20000) {
+    if (i % 3 == 0)
+        sum += i
+    else
+        sum -= 1
+    i += 1
+}
+for (def j = 0; j < 10000; j += 1)
+    sum = (sum * 3 + j) % 1000003
+def k = 1, p = 1
+while (k <= 30) {
+    p = p * 2 % 65521 + k ** 2
+    k += 1
+}
+println(sum + p)
@@ -0,0 +1,12 @@
+// String concatenation through + and +=, mixing text and numbers.
+def s = ''
+for (def i = 0; i < 500; i += 1)
+    s += 'x' + i
+def t = ''
+foreach (def c in [1, 2, 3, 4, 5, 6, 7, 8, 9, 10])
+    t = t + c + ','
+def line = ''
+for (def i = 0; i < 200; i += 1)
+    line = 'n=' + i + ' ' + (i * i) + ';'
+println(s == t)
+println(line)
@@ -0,0 +1,20 @@
+// switch expressions over numbers and strings.
+def total = 0
+for (def i = 0; i < 5000; i += 1) {
+    def name = switch (i % 6) {
+        case 0 -> 'zero'
+        case 1 -> 'one'
+        case 2 -> 'two'
+        case 3 -> 'three'
+        case 4 -> 'four'
+        default -> 'many'
+    }
+    total += switch (name) {
+        case 'zero' -> 0
+        case 'one' -> 1
+        case 'two' -> 2
+        case 'three' -> 3
+        default -> 4
+    }
+}
+println(total)
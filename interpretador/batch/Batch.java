@@ -0,0 +1,191 @@
+package batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import interpreter.Interpreter;
+import interpreter.util.ScriptCache;
+
+// Runs many independent scripts in one JVM on a fork-join pool, one task
+// per script, each with its own Interpreter. A script's output is captured
+// in memory and printed after the batch in the order the scripts were
+// given, each under a header with its exit status and wall time; internal
+// errors go to err under the same header. Scripts read from an empty
+// standard input.
+public class Batch {
+
+    public static final String USAGE =
+        "Usage: java mgb [--vm | --bytecode] [--pipeline] [--eager] [--cache] [miniGroovy file or directory]...";
+
+    private Interpreter.Backend backend;
+    private boolean pipeline;
+    private boolean eager;
+    private ScriptCache cache;
+
+    public Batch(Interpreter.Backend backend, boolean pipeline, boolean eager) {
+        this.backend = backend;
+        this.pipeline = pipeline;
+        this.eager = eager;
+    }
+
+    public void setCache(ScriptCache cache) {
+        this.cache = cache;
+    }
+
+    public static class Result {
+        public final String file;
+        public int status;
+        public long nanos;
+        public byte[] out;
+        public byte[] err;
+
+        Result(String file) {
+            this.file = file;
+        }
+    }
+
+    // Runs the scripts named on the command line, prints their results and
+    // returns 1 if any of them failed, 0 otherwise.
+    public static int main(String[] args, PrintStream out, PrintStream err) {
+        Interpreter.Backend backend = Interpreter.Backend.TREE;
+        boolean pipeline = false;
+        boolean eager = false;
+        ScriptCache cache = null;
+        int n = 0;
+        while (n < args.length) {
+            if (args[n].equals("--vm"))
+                backend = Interpreter.Backend.VM;
+            else if (args[n].equals("--bytecode"))
+                backend = Interpreter.Backend.BYTECODE;
+            else if (args[n].equals("--pipeline"))
+                pipeline = true;
+            else if (args[n].equals("--eager"))
+                eager = true;
+            else if (args[n].equals("--cache"))
+                cache = ScriptCache.shared();
+            else
+                break;
+
+            n++;
+        }
+
+        if (n == args.length) {
+            out.println(USAGE);
+            return 0;
+        }
+
+        List<String> files = expand(Arrays.copyOfRange(args, n, args.length));
+        long start = System.nanoTime();
+        Batch batch = new Batch(backend, pipeline, eager);
+        batch.setCache(cache);
+        Result[] results = batch.run(files);
+        long wall = System.nanoTime() - start;
+
+        int failed = 0;
+        long total = 0;
+        for (Result r : results) {
+            out.printf("==> %s: exit %d, %.1f ms\n", r.file, r.status, r.nanos / 1e6);
+            out.write(r.out, 0, r.out.length);
+            out.flush();
+            if (r.err.length > 0) {
+                err.printf("==> %s\n", r.file);
+                err.write(r.err, 0, r.err.length);
+                err.flush();
+            }
+
+            if (r.status != 0)
+                failed++;
+
+            total += r.nanos;
+        }
+
+        out.printf("==> %d scripts, %d failed, %.1f ms (%.1f ms summed)\n",
+            results.length, failed, wall / 1e6, total / 1e6);
+        return failed == 0 ? 0 : 1;
+    }
+
+    // Runs every script and returns their results in the same order.
+    public Result[] run(List<String> files) {
+        Result[] results = new Result[files.size()];
+        for (int i = 0; i < results.length; i++)
+            results[i] = new Result(files.get(i));
+
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            pool.invoke(new Task(results, 0, results.length));
+        } finally {
+            pool.shutdown();
+        }
+
+        return results;
+    }
+
+    private void execute(Result r) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stdout = new PrintStream(out);
+        PrintStream stderr = new PrintStream(err);
+
+        long start = System.nanoTime();
+        Interpreter interpreter = new Interpreter(InputStream.nullInputStream(), stdout, stderr);
+        interpreter.setCache(cache);
+        r.status = interpreter.run(r.file, backend, pipeline, eager);
+        r.nanos = System.nanoTime() - start;
+
+        stdout.flush();
+        stderr.flush();
+        r.out = out.toByteArray();
+        r.err = err.toByteArray();
+    }
+
+    // Splits the range in halves until a single script is left.
+    private class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Result[] results;
+        private int from;
+        private int to;
+
+        Task(Result[] results, int from, int to) {
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                execute(results[from]);
+            } else if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Task(results, from, mid), new Task(results, mid, to));
+            }
+        }
+    }
+
+    // Replaces each directory by the .mg files directly inside it, sorted
+    // by name.
+    private static List<String> expand(String[] args) {
+        List<String> files = new ArrayList<String>();
+        for (String arg : args) {
+            File[] entries = new File(arg).listFiles((dir, name) -> name.endsWith(".mg"));
+            if (entries == null) {
+                files.add(arg);
+            } else {
+                Arrays.sort(entries);
+                for (File f : entries)
+                    files.add(f.getPath());
+            }
+        }
+
+        return files;
+    }
+
+}
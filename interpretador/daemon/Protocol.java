@@ -0,0 +1,117 @@
+package daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+// The wire format between mgc and a server started with mgi --server.
+// One connection runs one script.
+//
+// Request: an int count and count strings in DataOutput.writeUTF form,
+// the mgi arguments with the script as an absolute path.
+//
+// Response: frames of a type byte and an int. STDOUT and STDERR frames
+// carry that many bytes of output; an EXIT frame carries the exit status
+// and ends the response. A READ frame asks for up to that many bytes of
+// standard input, which the client answers with an int count, -1 at end of
+// input, and the bytes. Input is pulled only when the script reads, so the
+// client never has a thread blocked on its standard input; the JVM delays
+// exit while one is.
+public final class Protocol {
+
+    public static final int EXIT = 0;
+    public static final int STDOUT = 1;
+    public static final int STDERR = 2;
+    public static final int READ = 3;
+
+    private Protocol() {
+    }
+
+    // mgi.sock in $XDG_RUNTIME_DIR, or else in mgi-<user> in the temporary
+    // directory. Server and mgc only use a socket in a directory that no one
+    // else can write; see PrivateDirectory.
+    public static String defaultSocket() {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path dir = runtime != null && !runtime.isEmpty() ? Path.of(runtime) :
+            Path.of(System.getProperty("java.io.tmpdir"), "mgi-" + System.getProperty("user.name"));
+        return dir.resolve("mgi.sock").toString();
+    }
+
+    // Sends everything written to it as frames of one type.
+    static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int type;
+
+        FrameOutputStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return;
+
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    // Asks the client for standard input with READ frames.
+    static final class RemoteInputStream extends InputStream {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private boolean eof;
+
+        RemoteInputStream(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (eof)
+                return -1;
+
+            synchronized (out) {
+                out.writeByte(READ);
+                out.writeInt(len);
+                out.flush();
+            }
+
+            int n = in.readInt();
+            if (n < 0) {
+                eof = true;
+                return -1;
+            }
+
+            in.readFully(b, off, n);
+            return n;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import interpreter.Interpreter;
+import interpreter.util.PrivateDirectory;
+
+// Keeps one JVM running and interprets the scripts that mgc sends over a
+// Unix domain socket, so each run skips JVM startup and reuses classes
+// the JIT has already compiled. Every connection runs on its own thread
+// with its own Interpreter, so scripts do not share variables or streams.
+public class Server {
+
+    private Server() {
+    }
+
+    // Listens on socket, which must be in a directory only this user can
+    // write, created if missing: whatever is at the path is deleted first,
+    // and clients must not reach a server someone else bound there.
+    public static void serve(String socket) {
+        Path path = Path.of(socket).toAbsolutePath();
+        if (!PrivateDirectory.create(path.getParent())) {
+            System.err.println("Unable to listen on " + socket + ": " + path.getParent() +
+                " must be a directory that only you can write");
+            System.exit(1);
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            Files.deleteIfExists(path);
+            server.bind(UnixDomainSocketAddress.of(path));
+            path.toFile().deleteOnExit();
+
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread t = new Thread(() -> handle(client));
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to listen on " + socket + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void handle(SocketChannel client) {
+        try (client) {
+            execute(client);
+        } catch (IOException e) {
+            System.err.println("mgi server: " + e.getMessage());
+        }
+    }
+
+    private static void execute(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(client)));
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(client)));
+
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++)
+            args[i] = in.readUTF();
+
+        PrintStream stdout = new PrintStream(new Protocol.FrameOutputStream(out, Protocol.STDOUT), true);
+        PrintStream stderr = new PrintStream(new Protocol.FrameOutputStream(out, Protocol.STDERR), true);
+        Interpreter interpreter = new Interpreter(new Protocol.RemoteInputStream(in, out), stdout, stderr);
+        int status = interpreter.run(args);
+        stdout.flush();
+        stderr.flush();
+
+        out.writeByte(Protocol.EXIT);
+        out.writeInt(status);
+        out.flush();
+    }
+
+}
@@ -0,0 +1,45 @@
+package interpreter;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import interpreter.util.Memory;
+import interpreter.util.Output;
+
+// Everything one running script owns: its variables, where read() takes
+// lines from and where print goes. Commands and expressions receive it as
+// a parameter, so scripts with their own contexts can run on separate
+// threads at the same time.
+public class ExecutionContext {
+
+    private final Memory memory;
+    private final Scanner input;
+    private final Output output;
+    private final boolean eager;
+
+    public ExecutionContext(InputStream in, PrintStream out, boolean eager) {
+        this.memory = new Memory();
+        this.input = new Scanner(in);
+        this.output = new Output(out);
+        this.eager = eager;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    public Scanner getInput() {
+        return input;
+    }
+
+    public Output getOutput() {
+        return output;
+    }
+
+    // Whether && and || evaluate both operands (mgi --eager).
+    public boolean isEager() {
+        return eager;
+    }
+
+}
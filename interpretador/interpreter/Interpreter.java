@@ -0,0 +1,153 @@
+package interpreter;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import interpreter.bytecode.CompiledScript;
+import interpreter.bytecode.Generator;
+import interpreter.command.Command;
+import interpreter.util.Hoister;
+import interpreter.util.InterpreterException;
+import interpreter.util.Optimizer;
+import interpreter.util.Resolver;
+import interpreter.util.ScriptCache;
+import interpreter.vm.Compiler;
+import interpreter.vm.Machine;
+import lexical.LexicalAnalysis;
+import lexical.LexicalException;
+import syntatic.SyntaticAnalysis;
+
+// Runs scripts the way mgi does: lex, parse, optimize and execute each one
+// in a fresh ExecutionContext. read() takes lines from in, the script and
+// its errors print to out and internal errors go to err. Instances share
+// nothing but an optional ScriptCache, so several can run scripts at the
+// same time.
+public class Interpreter {
+
+    public static final String USAGE =
+        "Usage: java mgi [--vm | --bytecode] [--pipeline] [--eager] [--cache] [miniGroovy file]";
+
+    // Tree walks execute(), VM runs the register machine and BYTECODE runs
+    // the script as a hidden class, or as a tree when it is too large for
+    // one method.
+    public enum Backend {
+        TREE,
+        VM,
+        BYTECODE;
+    }
+
+    private InputStream in;
+    private PrintStream out;
+    private PrintStream err;
+    private ScriptCache cache;
+
+    public Interpreter(InputStream in, PrintStream out, PrintStream err) {
+        this.in = in;
+        this.out = out;
+        this.err = err;
+    }
+
+    // Parsed scripts are looked up in cache, or always parsed when it is
+    // null.
+    public void setCache(ScriptCache cache) {
+        this.cache = cache;
+    }
+
+    // Runs the script named by the last argument with the given flags and
+    // returns the exit status.
+    public int run(String[] args) {
+        Backend backend = Backend.TREE;
+        boolean pipeline = false;
+        boolean eager = false;
+        int n = 0;
+        while (n < args.length - 1) {
+            if (args[n].equals("--vm"))
+                backend = Backend.VM;
+            else if (args[n].equals("--bytecode"))
+                backend = Backend.BYTECODE;
+            else if (args[n].equals("--pipeline"))
+                pipeline = true;
+            else if (args[n].equals("--eager"))
+                eager = true;
+            else if (args[n].equals("--cache"))
+                cache = ScriptCache.shared();
+            else
+                break;
+
+            n++;
+        }
+
+        if (args.length == 0 || n != args.length - 1) {
+            out.println(USAGE);
+            return 0;
+        }
+
+        return run(args[args.length - 1], backend, pipeline, eager);
+    }
+
+    // Runs one script with the back end and options given and returns the
+    // exit status.
+    public int run(String file, Backend backend, boolean pipeline, boolean eager) {
+        ExecutionContext ctx = new ExecutionContext(in, out, eager);
+        int status = 0;
+        try {
+            Command c = cache != null ? load(file, pipeline)
+                                      : parse(new LexicalAnalysis(file), pipeline);
+            int slots = Resolver.resolve(c);
+            CompiledScript script = backend == Backend.BYTECODE ?
+                Generator.compile(c, slots, eager) : null;
+            if (script != null) {
+                script.run(ctx);
+            } else if (backend == Backend.VM) {
+                Machine.run(Compiler.compile(c, slots, eager), ctx);
+            } else {
+                Hoister.hoist(c);
+                ctx.getMemory().frame(slots);
+                c.execute(ctx);
+            }
+        } catch (InterpreterException e) {
+            ctx.getOutput().flush();
+            out.printf("%02d: %s\n", e.getLine(), e.getMessage());
+            status = 1;
+        } catch (Exception e) {
+            ctx.getOutput().flush();
+            err.println("Internal error: " + e.getMessage());
+        } finally {
+            ctx.getOutput().flush();
+        }
+
+        return status;
+    }
+
+    // Returns the tree cached for the file's contents, parsing and caching
+    // it on a miss.
+    private Command load(String file, boolean pipeline) {
+        byte[] source;
+        try {
+            source = Files.readAllBytes(Path.of(file));
+        } catch (Exception e) {
+            throw new LexicalException("Unable to open file");
+        }
+
+        String key = ScriptCache.key(source);
+        Command c = cache.get(key);
+        if (c == null) {
+            c = parse(new LexicalAnalysis(source), pipeline);
+            cache.put(key, c);
+        }
+
+        return c;
+    }
+
+    private static Command parse(LexicalAnalysis lex, boolean pipeline) {
+        try (LexicalAnalysis l = lex) {
+            SyntaticAnalysis s = new SyntaticAnalysis(l, pipeline);
+            Command c = s.start();
+            Optimizer.optimize(c);
+            return c;
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package interpreter.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Assembles a class with a single public static method. Only the few
+// instructions Generator needs are provided. The class file version is 49,
+// the last one verified by type inference, so no stack map frames have to
+// be computed. The operand stack depth is tracked as instructions are
+// emitted: after an unconditional jump the depth recorded for the next
+// label bound is used.
+class ClassWriter {
+
+    // Branch offsets are signed 16-bit values.
+    static final int MAX_CODE = Short.MAX_VALUE;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD = 0x19;
+    private static final int AALOAD = 0x32;
+    private static final int ISTORE = 0x36;
+    private static final int ASTORE = 0x3a;
+    private static final int AASTORE = 0x53;
+    private static final int POP = 0x57;
+    private static final int DUP = 0x59;
+    private static final int IINC = 0x84;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int IF_ICMPGE = 0xa2;
+    private static final int GOTO = 0xa7;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int CHECKCAST = 0xc0;
+    private static final int WIDE = 0xc4;
+
+    static class Label {
+        int pos = -1;
+        int depth = -1;
+        // Pairs of [instruction start, offset position] for 2-byte
+        // offsets, and the same with a negated offset position for 4-byte
+        // ones.
+        List<int[]> fixups = new ArrayList<int[]>();
+    }
+
+    private List<byte[]> pool;
+    private Map<String, Integer> poolIndex;
+    private byte[] code;
+    private int size;
+    private int depth;
+    private int maxDepth;
+
+    ClassWriter() {
+        pool = new ArrayList<byte[]>();
+        poolIndex = new HashMap<String, Integer>();
+        code = new byte[256];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Returns the class file for a class named name (in internal form)
+    // whose static method is named method.
+    byte[] toByteArray(String name, String method, String descriptor, int maxLocals) {
+        int thisClass = classRef(name);
+        int superClass = classRef("java/lang/Object");
+        int methodName = utf8(method);
+        int methodDesc = utf8(descriptor);
+        int codeName = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(pool.size() + 1);
+            for (byte[] entry : pool)
+                out.write(entry);
+
+            out.writeShort(0x0031); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(1); // methods
+
+            out.writeShort(0x0009); // public static
+            out.writeShort(methodName);
+            out.writeShort(methodDesc);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + size);
+            out.writeShort(maxDepth);
+            out.writeShort(maxLocals);
+            out.writeInt(size);
+            out.write(code, 0, size);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // code attributes
+
+            out.writeShort(0); // class attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    boolean poolOverflow() {
+        return pool.size() >= 0xFFFF;
+    }
+
+    // Constant pool.
+
+    private int utf8(String s) {
+        return entry("U" + s, () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(1);
+            out.writeUTF(s);
+            return bytes.toByteArray();
+        });
+    }
+
+    private int classRef(String name) {
+        int n = utf8(name);
+        return entry("C" + name, () -> new byte[] { 7, (byte) (n >> 8), (byte) n });
+    }
+
+    private int string(String s) {
+        int n = utf8(s);
+        return entry("S" + s, () -> new byte[] { 8, (byte) (n >> 8), (byte) n });
+    }
+
+    private int integer(int v) {
+        return entry("I" + v, () -> new byte[] { 3, (byte) (v >> 24), (byte) (v >> 16), (byte) (v >> 8), (byte) v });
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        // Most calls repeat a member already in the pool.
+        String key = tag + owner + "." + name + " " + descriptor;
+        Integer idx = poolIndex.get(key);
+        if (idx != null)
+            return idx;
+
+        int c = classRef(owner);
+        int n = utf8(name);
+        int d = utf8(descriptor);
+        int nt = entry("T" + name + " " + descriptor, () ->
+            new byte[] { 12, (byte) (n >> 8), (byte) n, (byte) (d >> 8), (byte) d });
+        return entry(key, () ->
+            new byte[] { (byte) tag, (byte) (c >> 8), (byte) c, (byte) (nt >> 8), (byte) nt });
+    }
+
+    private interface Entry {
+        byte[] bytes() throws IOException;
+    }
+
+    private int entry(String key, Entry entry) {
+        Integer idx = poolIndex.get(key);
+        if (idx == null) {
+            try {
+                pool.add(entry.bytes());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            idx = pool.size();
+            poolIndex.put(key, idx);
+        }
+
+        return idx;
+    }
+
+    // Instructions.
+
+    void aconstNull() {
+        op(ACONST_NULL, 1);
+    }
+
+    void push(int v) {
+        if (v >= -1 && v <= 5) {
+            op(ICONST_0 + v, 1);
+        } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            u1(v);
+        } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            u2(v);
+        } else {
+            ldc(integer(v));
+        }
+    }
+
+    void ldc(String s) {
+        ldc(string(s));
+    }
+
+    private void ldc(int idx) {
+        if (idx < 256) {
+            op(LDC, 1);
+            u1(idx);
+        } else {
+            op(LDC_W, 1);
+            u2(idx);
+        }
+    }
+
+    void aload(int local) {
+        local(ALOAD, local, 1);
+    }
+
+    void astore(int local) {
+        local(ASTORE, local, -1);
+    }
+
+    void iload(int local) {
+        local(ILOAD, local, 1);
+    }
+
+    void istore(int local) {
+        local(ISTORE, local, -1);
+    }
+
+    void iinc(int local, int delta) {
+        if (local < 256) {
+            op(IINC, 0);
+            u1(local);
+            u1(delta);
+        } else {
+            op(WIDE, 0);
+            u1(IINC);
+            u2(local);
+            u2(delta);
+        }
+    }
+
+    void aaload() {
+        op(AALOAD, -1);
+    }
+
+    void aastore() {
+        op(AASTORE, -3);
+    }
+
+    void pop() {
+        op(POP, -1);
+    }
+
+    void dup() {
+        op(DUP, 1);
+    }
+
+    void returnVoid() {
+        op(RETURN, 0);
+        depth = -1;
+    }
+
+    void checkcast(String type) {
+        op(CHECKCAST, 0);
+        u2(classRef(type));
+    }
+
+    void getstatic(String owner, String name, String descriptor) {
+        op(GETSTATIC, 1);
+        u2(member(9, owner, name, descriptor));
+    }
+
+    void invokestatic(String owner, String name, String descriptor) {
+        op(INVOKESTATIC, delta(descriptor));
+        u2(member(10, owner, name, descriptor));
+    }
+
+    void invokevirtual(String owner, String name, String descriptor) {
+        op(INVOKEVIRTUAL, delta(descriptor) - 1);
+        u2(member(10, owner, name, descriptor));
+    }
+
+    void ifeq(Label target) {
+        jump(IFEQ, -1, target);
+    }
+
+    void ifne(Label target) {
+        jump(IFNE, -1, target);
+    }
+
+    void ifIcmpge(Label target) {
+        jump(IF_ICMPGE, -2, target);
+    }
+
+    void jump(Label target) {
+        jump(GOTO, 0, target);
+        depth = -1;
+    }
+
+    // Pops an int and jumps to targets[i] when it is i, or to dflt.
+    void tableswitch(Label dflt, Label[] targets) {
+        int start = size;
+        op(TABLESWITCH, -1);
+        while (size % 4 != 0)
+            u1(0);
+        offset32(start, dflt);
+        u4(0);
+        u4(targets.length - 1);
+        for (Label l : targets)
+            offset32(start, l);
+        depth = -1;
+    }
+
+    void bind(Label label) {
+        label.pos = size;
+        if (depth < 0)
+            depth = label.depth;
+        else
+            label.depth = depth;
+
+        for (int[] f : label.fixups) {
+            int offset = label.pos - f[0];
+            if (f[1] >= 0) {
+                code[f[1]] = (byte) (offset >> 8);
+                code[f[1] + 1] = (byte) offset;
+            } else {
+                int p = -f[1];
+                code[p] = (byte) (offset >> 24);
+                code[p + 1] = (byte) (offset >> 16);
+                code[p + 2] = (byte) (offset >> 8);
+                code[p + 3] = (byte) offset;
+            }
+        }
+        label.fixups.clear();
+    }
+
+    private void jump(int opcode, int delta, Label target) {
+        int start = size;
+        op(opcode, delta);
+        record(target);
+        if (target.pos >= 0) {
+            u2(target.pos - start);
+        } else {
+            target.fixups.add(new int[] { start, size });
+            u2(0);
+        }
+    }
+
+    private void offset32(int start, Label target) {
+        record(target);
+        if (target.pos >= 0) {
+            u4(target.pos - start);
+        } else {
+            target.fixups.add(new int[] { start, -size });
+            u4(0);
+        }
+    }
+
+    private void record(Label target) {
+        if (target.depth < 0)
+            target.depth = depth;
+    }
+
+    private void local(int opcode, int local, int delta) {
+        if (local < 256) {
+            op(opcode, delta);
+            u1(local);
+        } else {
+            op(WIDE, delta);
+            u1(opcode);
+            u2(local);
+        }
+    }
+
+    private void op(int opcode, int delta) {
+        u1(opcode);
+        depth += delta;
+        if (depth > maxDepth)
+            maxDepth = depth;
+    }
+
+    // Stack effect of a static call: minus its arguments, plus its result.
+    private static int delta(String descriptor) {
+        int delta = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            while (c == '[')
+                c = descriptor.charAt(++i);
+            if (c == 'L')
+                i = descriptor.indexOf(';', i);
+            delta -= c == 'J' || c == 'D' ? 2 : 1;
+            i++;
+        }
+
+        char ret = descriptor.charAt(i + 1);
+        return delta + (ret == 'V' ? 0 : ret == 'J' || ret == 'D' ? 2 : 1);
+    }
+
+    private void u1(int v) {
+        if (size == code.length)
+            code = Arrays.copyOf(code, code.length * 2);
+
+        code[size++] = (byte) v;
+    }
+
+    private void u2(int v) {
+        u1(v >> 8);
+        u1(v);
+    }
+
+    private void u4(int v) {
+        u2(v >> 16);
+        u2(v);
+    }
+
+}
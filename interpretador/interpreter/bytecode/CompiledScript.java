@@ -0,0 +1,29 @@
+package interpreter.bytecode;
+
+import java.lang.invoke.MethodHandle;
+
+import interpreter.ExecutionContext;
+
+// A script translated by Generator: the static method of its hidden class
+// and the objects that method loads by index.
+public class CompiledScript {
+
+    private MethodHandle handle;
+    private Object[] constants;
+
+    CompiledScript(MethodHandle handle, Object[] constants) {
+        this.handle = handle;
+        this.constants = constants;
+    }
+
+    public void run(ExecutionContext ctx) {
+        try {
+            handle.invokeExact(ctx, constants);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,589 @@
+package interpreter.bytecode;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.ExecutionContext;
+import interpreter.command.AssignCommand;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.DeclarationType1Command;
+import interpreter.command.DeclarationType2Command;
+import interpreter.command.ForCommand;
+import interpreter.command.ForeachCommand;
+import interpreter.command.IfCommand;
+import interpreter.command.PrintCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.ArrayExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CaseItem;
+import interpreter.expr.CastExpr;
+import interpreter.expr.ConstExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.MapExpr;
+import interpreter.expr.MapItem;
+import interpreter.expr.SetExpr;
+import interpreter.expr.SwitchExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.expr.Variable;
+import interpreter.value.TextValue;
+import interpreter.value.Value;
+
+// Translates a Command tree into the static method of a hidden class, so
+// HotSpot compiles each script as ordinary Java code instead of through
+// the megamorphic execute()/expr() calls. Nodes are evaluated in the same
+// order as the tree and the register VM, values stay interpreter.value
+// types, and every operation is a call into Ops. Resolved variables live in
+// JVM locals, which are copied to and from the Memory frame around the
+// rare node that is still run by the tree-walker.
+public class Generator {
+
+    private static final String OPS = "interpreter/bytecode/Ops";
+    private static final String VALUE = "interpreter/value/Value";
+    private static final String V = "L" + VALUE + ";";
+    private static final String CTX = "Linterpreter/ExecutionContext;";
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String BOOLEAN = "interpreter/value/BooleanValue";
+
+    private static final MethodType RUN =
+        MethodType.methodType(void.class, ExecutionContext.class, Object[].class);
+
+    // Recently defined classes by their bytes. Evicted ones are unloaded
+    // once no CompiledScript refers to them.
+    private static final int CLASS_ENTRIES = 256;
+    private static final Map<ByteBuffer, MethodHandle> CLASSES =
+        new LinkedHashMap<ByteBuffer, MethodHandle>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, MethodHandle> eldest) {
+                return size() > CLASS_ENTRIES;
+            }
+        };
+
+    // Locals: the context, the constants and the frame, then one per slot
+    // and temporaries above them.
+    private static final int CTX_LOCAL = 0;
+    private static final int CONSTANTS = 1;
+    private static final int FRAME = 2;
+    private static final int VARS = 3;
+
+    private ClassWriter cw;
+    private List<Object> constants;
+    private int slots;
+    private int nextLocal;
+    private int maxLocals;
+    private boolean eager;
+    private int nullText = -1;
+
+    private Generator(int slots, boolean eager) {
+        this.cw = new ClassWriter();
+        this.constants = new ArrayList<Object>();
+        this.slots = slots;
+        this.nextLocal = VARS + slots;
+        this.maxLocals = nextLocal;
+        this.eager = eager;
+    }
+
+    // Returns the compiled script, or null when it is too large for one
+    // method. slots is the count returned by Resolver.resolve and eager
+    // whether && and || evaluate both operands.
+    public static CompiledScript compile(Command cmd, int slots, boolean eager) {
+        Generator g = new Generator(slots, eager);
+        g.prologue();
+        g.compileCommand(cmd);
+        g.cw.returnVoid();
+        if (g.cw.size() > ClassWriter.MAX_CODE || g.cw.poolOverflow() || g.maxLocals > 0xFFFF)
+            return null;
+
+        byte[] bytes = g.cw.toByteArray("interpreter/bytecode/Script", "run",
+            RUN.toMethodDescriptorString(), g.maxLocals);
+        return new CompiledScript(define(bytes), g.constants.toArray());
+    }
+
+    // The constants are passed to the method rather than built into the
+    // class, so the same script always translates to the same bytes. Those
+    // share one hidden class, and a script run again by the server, mgb or
+    // a benchmark reuses the code HotSpot has already compiled.
+    private static MethodHandle define(byte[] bytes) {
+        ByteBuffer key = ByteBuffer.wrap(bytes);
+        synchronized (CLASSES) {
+            MethodHandle handle = CLASSES.get(key);
+            if (handle != null)
+                return handle;
+        }
+
+        MethodHandle handle;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            handle = lookup.findStatic(lookup.lookupClass(), "run", RUN);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+
+        synchronized (CLASSES) {
+            CLASSES.put(key, handle);
+        }
+        return handle;
+    }
+
+    private void prologue() {
+        cw.aload(CTX_LOCAL);
+        cw.push(slots);
+        cw.invokestatic(OPS, "frame", "(" + CTX + "I)[" + V);
+        cw.astore(FRAME);
+        reload();
+    }
+
+    private void compileCommand(Command cmd) {
+        int mark = nextLocal;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                compileCommand(c);
+        } else if (cmd instanceof AssignCommand) {
+            compileAssign((AssignCommand) cmd);
+        } else if (cmd instanceof DeclarationType1Command) {
+            DeclarationType1Command dc = (DeclarationType1Command) cmd;
+            if (dc.getRhs() == null)
+                loadNullText();
+            else
+                compileExpr(dc.getRhs());
+            store(dc.getLhs());
+        } else if (cmd instanceof DeclarationType2Command) {
+            DeclarationType2Command dc = (DeclarationType2Command) cmd;
+            int array = allocLocal();
+            compileExpr(dc.getRhs());
+            cw.astore(array);
+            List<Variable> vars = dc.getLhs();
+            for (int i = 0; i < vars.size(); i++) {
+                cw.aload(array);
+                cw.push(i);
+                cw.invokestatic(OPS, "unpack", "(" + V + "I)" + V);
+                store(vars.get(i));
+            }
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            ClassWriter.Label otherwise = new ClassWriter.Label();
+            compileCondition(ic.getExpr(), otherwise);
+            compileCommand(ic.getThenCommands());
+            if (ic.getElseCommands() != null) {
+                ClassWriter.Label end = new ClassWriter.Label();
+                cw.jump(end);
+                cw.bind(otherwise);
+                compileCommand(ic.getElseCommands());
+                cw.bind(end);
+            } else {
+                cw.bind(otherwise);
+            }
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            ClassWriter.Label top = new ClassWriter.Label();
+            ClassWriter.Label end = new ClassWriter.Label();
+            cw.bind(top);
+            compileCondition(wc.getExpr(), end);
+            compileCommand(wc.getCommands());
+            cw.jump(top);
+            cw.bind(end);
+        } else if (cmd instanceof ForCommand && ((ForCommand) cmd).getCond() != null) {
+            ForCommand fc = (ForCommand) cmd;
+            ClassWriter.Label top = new ClassWriter.Label();
+            ClassWriter.Label end = new ClassWriter.Label();
+            compileCommand(fc.getInit());
+            cw.bind(top);
+            compileCondition(fc.getCond(), end);
+            compileCommand(fc.getCommands());
+            compileCommand(fc.getInc());
+            cw.jump(top);
+            cw.bind(end);
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            compileExpr(fc.getExpr());
+            cw.dup();
+            cw.push(fc.getLine());
+            cw.invokestatic(OPS, "checkArray", "(" + V + "I)V");
+            int array = allocLocal();
+            int index = allocLocal();
+            cw.astore(array);
+            cw.push(0);
+            cw.istore(index);
+
+            ClassWriter.Label top = new ClassWriter.Label();
+            ClassWriter.Label end = new ClassWriter.Label();
+            cw.bind(top);
+            cw.iload(index);
+            cw.aload(array);
+            cw.invokestatic(OPS, "size", "(" + V + ")I");
+            cw.ifIcmpge(end);
+            cw.aload(array);
+            cw.iload(index);
+            cw.invokestatic(OPS, "element", "(" + V + "I)" + V);
+            store(fc.getVar());
+            cw.iinc(index, 1);
+            compileCommand(fc.getCommands());
+            cw.jump(top);
+            cw.bind(end);
+        } else if (cmd instanceof PrintCommand) {
+            PrintCommand pc = (PrintCommand) cmd;
+            compileExpr(pc.getExpr());
+            cw.aload(CTX_LOCAL);
+            cw.push(pc.isNewline() ? 1 : 0);
+            cw.invokestatic(OPS, "print", "(" + V + CTX + "Z)V");
+        } else {
+            spill();
+            loadConstant(cmd, "interpreter/command/Command");
+            cw.aload(CTX_LOCAL);
+            cw.invokevirtual("interpreter/command/Command", "execute", "(" + CTX + ")V");
+            reload();
+        }
+
+        nextLocal = mark;
+    }
+
+    private void compileAssign(AssignCommand ac) {
+        SetExpr lhs = ac.getLhs();
+        if (ac.getOp() == AssignCommand.Op.StdOp) {
+            compileExpr(ac.getRhs());
+            compileStore(lhs, ac.getLine());
+        } else {
+            compileExpr(lhs);
+            compileExpr(ac.getRhs());
+            cw.push(ac.getOp().ordinal());
+            cw.push(ac.getLine());
+            cw.invokestatic(OPS, "assign", "(" + V + V + "II)" + V);
+            compileStore(lhs, -1);
+        }
+    }
+
+    // Stores the value on top of the stack into lhs. An element store
+    // evaluates its base and index after the value, as AccessExpr does.
+    private void compileStore(SetExpr lhs, int guard) {
+        if (lhs instanceof Variable) {
+            store((Variable) lhs);
+        } else if (lhs instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) lhs;
+            compileExpr(ae.getBase());
+            cw.dup();
+            cw.push(ae.getLine());
+            cw.invokestatic(OPS, "checkIndexable", "(" + V + "I)V");
+            compileExpr(ae.getIndex());
+            cw.push(ae.getLine());
+            cw.push(guard);
+            cw.invokestatic(OPS, "set", "(" + V + V + V + "II)V");
+        } else {
+            int value = allocLocal();
+            cw.astore(value);
+            spill();
+            loadConstant(lhs, "interpreter/expr/SetExpr");
+            cw.aload(CTX_LOCAL);
+            cw.aload(value);
+            cw.invokevirtual("interpreter/expr/SetExpr", "setValue", "(" + CTX + V + ")V");
+            reload();
+        }
+    }
+
+    private void store(Variable var) {
+        cw.astore(VARS + var.getSlot());
+    }
+
+    // Pushes the value of expr.
+    private void compileExpr(Expr expr) {
+        int mark = nextLocal;
+
+        if (expr instanceof ConstExpr) {
+            Value<?> v = ((ConstExpr) expr).getValue();
+            if (v == null)
+                cw.aconstNull();
+            else
+                loadConstant(v, VALUE);
+        } else if (expr instanceof Variable) {
+            cw.aload(VARS + ((Variable) expr).getSlot());
+        } else if (expr instanceof BinaryExpr && isShortCircuit((BinaryExpr) expr)) {
+            ClassWriter.Label no = new ClassWriter.Label();
+            ClassWriter.Label end = new ClassWriter.Label();
+            compileCondition(expr, no);
+            cw.getstatic(BOOLEAN, "TRUE", "L" + BOOLEAN + ";");
+            cw.jump(end);
+            cw.bind(no);
+            cw.getstatic(BOOLEAN, "FALSE", "L" + BOOLEAN + ";");
+            cw.bind(end);
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            compileExpr(be.getLeft());
+            compileExpr(be.getRight());
+            String arith = arithmetic(be.getOp());
+            if (arith != null) {
+                cw.push(be.getLine());
+                cw.invokestatic(OPS, arith, "(" + V + V + "I)" + V);
+            } else {
+                cw.push(be.getOp().ordinal());
+                cw.push(be.getLine());
+                cw.invokestatic(OPS, "binary", "(" + V + V + "II)" + V);
+            }
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr ue = (UnaryExpr) expr;
+            compileExpr(ue.getExpr());
+            if (ue.getOp() == UnaryExpr.Op.NotOp) {
+                cw.invokestatic(OPS, "not", "(" + V + ")" + V);
+            } else {
+                cw.aload(CTX_LOCAL);
+                cw.push(ue.getOp().ordinal());
+                cw.push(ue.getLine());
+                cw.invokestatic(OPS, "unary", "(" + V + CTX + "II)" + V);
+            }
+        } else if (expr instanceof CastExpr) {
+            CastExpr ce = (CastExpr) expr;
+            compileExpr(ce.getExpr());
+            cw.push(ce.getOp().ordinal());
+            cw.push(ce.getLine());
+            cw.invokestatic(OPS, "cast", "(" + V + "II)" + V);
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            compileExpr(ae.getBase());
+            cw.dup();
+            cw.push(ae.getLine());
+            cw.invokestatic(OPS, "checkIndexable", "(" + V + "I)V");
+            compileExpr(ae.getIndex());
+            cw.push(ae.getLine());
+            cw.invokestatic(OPS, "get", "(" + V + V + "I)" + V);
+        } else if (expr instanceof ArrayExpr) {
+            cw.invokestatic(OPS, "newArray", "()" + V);
+            for (Expr e : ((ArrayExpr) expr).getList()) {
+                cw.dup();
+                compileExpr(e);
+                cw.invokestatic(OPS, "append", "(" + V + V + ")V");
+            }
+        } else if (expr instanceof MapExpr) {
+            cw.invokestatic(OPS, "newMap", "()" + V);
+            for (MapItem item : ((MapExpr) expr).getItems()) {
+                cw.dup();
+                cw.ldc(item.Key);
+                compileExpr(item.value);
+                cw.invokestatic(OPS, "put", "(" + V + STRING + V + ")V");
+            }
+        } else if (expr instanceof SwitchExpr) {
+            compileSwitch((SwitchExpr) expr);
+        } else {
+            spill();
+            loadConstant(expr, "interpreter/expr/Expr");
+            cw.aload(CTX_LOCAL);
+            cw.invokevirtual("interpreter/expr/Expr", "expr", "(" + CTX + ")" + V);
+            reload();
+        }
+
+        nextLocal = mark;
+    }
+
+    // Jumps to otherwise when expr is false. Numeric comparisons branch on
+    // a boolean from Ops instead of allocating a BooleanValue, and
+    // short-circuit operators branch on each operand.
+    private void compileCondition(Expr expr, ClassWriter.Label otherwise) {
+        String compare = expr instanceof BinaryExpr ? comparison(((BinaryExpr) expr).getOp()) : null;
+        if (expr instanceof BinaryExpr && isShortCircuit((BinaryExpr) expr)) {
+            BinaryExpr be = (BinaryExpr) expr;
+            if (be.getOp() == BinaryExpr.Op.AndOp) {
+                compileCondition(be.getLeft(), otherwise);
+                compileCondition(be.getRight(), otherwise);
+            } else {
+                ClassWriter.Label yes = new ClassWriter.Label();
+                compileExpr(be.getLeft());
+                cw.invokestatic(OPS, "truth", "(" + V + ")Z");
+                cw.ifne(yes);
+                compileCondition(be.getRight(), otherwise);
+                cw.bind(yes);
+            }
+        } else if (compare != null) {
+            BinaryExpr be = (BinaryExpr) expr;
+            compileExpr(be.getLeft());
+            compileExpr(be.getRight());
+            cw.push(be.getLine());
+            cw.invokestatic(OPS, compare, "(" + V + V + "I)Z");
+            cw.ifeq(otherwise);
+        } else {
+            compileExpr(expr);
+            cw.invokestatic(OPS, "truth", "(" + V + ")Z");
+            cw.ifeq(otherwise);
+        }
+    }
+
+    private void compileSwitch(SwitchExpr se) {
+        Map<String, int[]> table = se.getTable();
+        if (table != null) {
+            compileTableSwitch(se, table);
+            return;
+        }
+
+        int scrutinee = allocLocal();
+        int matched = allocLocal();
+        int result = allocLocal();
+        compileExpr(se.getExpr());
+        cw.invokestatic(OPS, "str", "(" + V + ")" + STRING);
+        cw.astore(scrutinee);
+        cw.push(0);
+        cw.istore(matched);
+        cw.aconstNull();
+        cw.astore(result);
+
+        for (CaseItem item : se.getCases()) {
+            ClassWriter.Label next = new ClassWriter.Label();
+            cw.aload(scrutinee);
+            compileExpr(item.key);
+            compileExpr(item.key);
+            cw.invokestatic(OPS, "matches", "(" + STRING + V + V + ")Z");
+            cw.ifeq(next);
+            compileExpr(item.value);
+            cw.astore(result);
+            cw.push(1);
+            cw.istore(matched);
+            cw.bind(next);
+        }
+
+        ClassWriter.Label end = new ClassWriter.Label();
+        cw.iload(matched);
+        cw.ifne(end);
+        compileDefault(se);
+        cw.astore(result);
+        cw.bind(end);
+        cw.aload(result);
+    }
+
+    // Constant keys dispatch through a hash table to one block per key,
+    // which evaluates every case with that key so the last one wins.
+    private void compileTableSwitch(SwitchExpr se, Map<String, int[]> table) {
+        Map<String, Integer> blocks = new HashMap<String, Integer>();
+        List<int[]> cases = new ArrayList<int[]>();
+        for (Map.Entry<String, int[]> e : table.entrySet()) {
+            blocks.put(e.getKey(), cases.size());
+            cases.add(e.getValue());
+        }
+
+        compileExpr(se.getExpr());
+        loadConstant(blocks, "java/util/Map");
+        cw.invokestatic(OPS, "lookup", "(" + V + "Ljava/util/Map;)I");
+
+        ClassWriter.Label dflt = new ClassWriter.Label();
+        ClassWriter.Label end = new ClassWriter.Label();
+        if (cases.isEmpty()) {
+            cw.pop();
+        } else {
+            ClassWriter.Label[] targets = new ClassWriter.Label[cases.size()];
+            for (int i = 0; i < targets.length; i++)
+                targets[i] = new ClassWriter.Label();
+            cw.tableswitch(dflt, targets);
+
+            for (int i = 0; i < targets.length; i++) {
+                cw.bind(targets[i]);
+                int[] hits = cases.get(i);
+                for (int j = 0; j < hits.length; j++) {
+                    if (j > 0)
+                        cw.pop();
+                    compileExpr(se.getCases().get(hits[j]).value);
+                }
+                cw.jump(end);
+            }
+        }
+
+        cw.bind(dflt);
+        compileDefault(se);
+        cw.bind(end);
+    }
+
+    private void compileDefault(SwitchExpr se) {
+        if (se.getDefault() == null)
+            loadNullText();
+        else
+            compileExpr(se.getDefault());
+    }
+
+    private boolean isShortCircuit(BinaryExpr be) {
+        return !eager &&
+            (be.getOp() == BinaryExpr.Op.AndOp || be.getOp() == BinaryExpr.Op.OrOp);
+    }
+
+    private static String arithmetic(BinaryExpr.Op op) {
+        switch (op) {
+            case AddOp:
+                return "add";
+            case SubOp:
+                return "sub";
+            case MulOp:
+                return "mul";
+            case DivOp:
+                return "div";
+            case ModOp:
+                return "mod";
+            default:
+                return null;
+        }
+    }
+
+    private static String comparison(BinaryExpr.Op op) {
+        switch (op) {
+            case LowerThanOp:
+                return "lt";
+            case LowerEqualOp:
+                return "le";
+            case GreaterThanOp:
+                return "gt";
+            case GreaterEqualOp:
+                return "ge";
+            default:
+                return null;
+        }
+    }
+
+    // Copies the variables to the Memory frame before the tree-walker runs
+    // a node, and back afterwards.
+    private void spill() {
+        for (int i = 0; i < slots; i++) {
+            cw.aload(FRAME);
+            cw.push(i);
+            cw.aload(VARS + i);
+            cw.aastore();
+        }
+    }
+
+    private void reload() {
+        for (int i = 0; i < slots; i++) {
+            cw.aload(FRAME);
+            cw.push(i);
+            cw.aaload();
+            cw.astore(VARS + i);
+        }
+    }
+
+    private void loadConstant(Object value, String type) {
+        constants.add(value);
+        cw.aload(CONSTANTS);
+        cw.push(constants.size() - 1);
+        cw.aaload();
+        cw.checkcast(type);
+    }
+
+    private void loadNullText() {
+        if (nullText < 0) {
+            constants.add(new TextValue("null"));
+            nullText = constants.size() - 1;
+        }
+
+        cw.aload(CONSTANTS);
+        cw.push(nullText);
+        cw.aaload();
+        cw.checkcast(VALUE);
+    }
+
+    private int allocLocal() {
+        int local = nextLocal++;
+        if (nextLocal > maxLocals)
+            maxLocals = nextLocal;
+
+        return local;
+    }
+
+}
@@ -0,0 +1,215 @@
+package interpreter.bytecode;
+
+import java.util.List;
+import java.util.Map;
+
+import interpreter.ExecutionContext;
+import interpreter.command.AssignCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CastExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.util.InterpreterException;
+import interpreter.util.Utils;
+import interpreter.value.ArrayValue;
+import interpreter.value.BooleanValue;
+import interpreter.value.MapValue;
+import interpreter.value.NumberValue;
+import interpreter.value.TextValue;
+import interpreter.value.Value;
+
+// The operations generated code calls, one static method per Machine
+// instruction with the same semantics. They are small, so HotSpot inlines
+// them into the script's method, and the arithmetic and comparisons check
+// for two numbers first.
+public final class Ops {
+
+    private static final BinaryExpr.Op[] BINARY_OPS = BinaryExpr.Op.values();
+    private static final UnaryExpr.Op[] UNARY_OPS = UnaryExpr.Op.values();
+    private static final CastExpr.CastOp[] CAST_OPS = CastExpr.CastOp.values();
+    private static final AssignCommand.Op[] ASSIGN_OPS = AssignCommand.Op.values();
+
+    private Ops() {
+    }
+
+    public static Value<?>[] frame(ExecutionContext ctx, int size) {
+        return ctx.getMemory().frame(size);
+    }
+
+    public static boolean truth(Value<?> v) {
+        return v != null && v.eval();
+    }
+
+    public static Value<?> not(Value<?> v) {
+        return BooleanValue.of(!truth(v));
+    }
+
+    public static Value<?> add(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return NumberValue.of(((NumberValue) l).intValue() + ((NumberValue) r).intValue());
+
+        return BinaryExpr.apply(line, BinaryExpr.Op.AddOp, l, r);
+    }
+
+    public static Value<?> sub(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return NumberValue.of(((NumberValue) l).intValue() - ((NumberValue) r).intValue());
+
+        return BinaryExpr.apply(line, BinaryExpr.Op.SubOp, l, r);
+    }
+
+    public static Value<?> mul(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return NumberValue.of(((NumberValue) l).intValue() * ((NumberValue) r).intValue());
+
+        return BinaryExpr.apply(line, BinaryExpr.Op.MulOp, l, r);
+    }
+
+    public static Value<?> div(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return NumberValue.of(((NumberValue) l).intValue() / ((NumberValue) r).intValue());
+
+        return BinaryExpr.apply(line, BinaryExpr.Op.DivOp, l, r);
+    }
+
+    public static Value<?> mod(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return NumberValue.of(((NumberValue) l).intValue() % ((NumberValue) r).intValue());
+
+        return BinaryExpr.apply(line, BinaryExpr.Op.ModOp, l, r);
+    }
+
+    public static Value<?> binary(Value<?> l, Value<?> r, int op, int line) {
+        return BinaryExpr.apply(line, BINARY_OPS[op], l, r);
+    }
+
+    public static boolean lt(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return ((NumberValue) l).intValue() < ((NumberValue) r).intValue();
+
+        return truth(BinaryExpr.apply(line, BinaryExpr.Op.LowerThanOp, l, r));
+    }
+
+    public static boolean le(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return ((NumberValue) l).intValue() <= ((NumberValue) r).intValue();
+
+        return truth(BinaryExpr.apply(line, BinaryExpr.Op.LowerEqualOp, l, r));
+    }
+
+    public static boolean gt(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return ((NumberValue) l).intValue() > ((NumberValue) r).intValue();
+
+        return truth(BinaryExpr.apply(line, BinaryExpr.Op.GreaterThanOp, l, r));
+    }
+
+    public static boolean ge(Value<?> l, Value<?> r, int line) {
+        if (l instanceof NumberValue && r instanceof NumberValue)
+            return ((NumberValue) l).intValue() >= ((NumberValue) r).intValue();
+
+        return truth(BinaryExpr.apply(line, BinaryExpr.Op.GreaterEqualOp, l, r));
+    }
+
+    public static Value<?> unary(Value<?> v, ExecutionContext ctx, int op, int line) {
+        return UnaryExpr.apply(ctx, line, UNARY_OPS[op], v);
+    }
+
+    public static Value<?> cast(Value<?> v, int op, int line) {
+        return CastExpr.apply(line, CAST_OPS[op], v);
+    }
+
+    public static Value<?> assign(Value<?> l, Value<?> r, int op, int line) {
+        if (op == AssignCommand.Op.AddOp.ordinal() &&
+                l instanceof NumberValue && r instanceof NumberValue)
+            return NumberValue.of(((NumberValue) l).intValue() + ((NumberValue) r).intValue());
+
+        return AssignCommand.apply(line, ASSIGN_OPS[op], l, r);
+    }
+
+    public static Value<?> get(Value<?> base, Value<?> index, int line) {
+        return AccessExpr.get(line, base, index);
+    }
+
+    // guard is the line reported for anything but an InterpreterException,
+    // or -1 to let those through.
+    public static void set(Value<?> value, Value<?> base, Value<?> index, int line, int guard) {
+        if (guard < 0) {
+            AccessExpr.set(line, base, index, value);
+            return;
+        }
+
+        try {
+            AccessExpr.set(line, base, index, value);
+        } catch (InterpreterException e) {
+            throw e;
+        } catch (Exception e) {
+            Utils.abort(guard);
+        }
+    }
+
+    public static Value<?> newArray() {
+        return new ArrayValue(ArrayValue.newList());
+    }
+
+    public static void append(Value<?> array, Value<?> v) {
+        ((ArrayValue) array).add(v);
+    }
+
+    public static Value<?> newMap() {
+        return new MapValue(MapValue.newMap());
+    }
+
+    public static void put(Value<?> map, String key, Value<?> v) {
+        ((MapValue) map).value().put(key, v);
+    }
+
+    public static Value<?> unpack(Value<?> array, int i) {
+        List<Value<?>> list = ((ArrayValue) array).value();
+        return i < list.size() ? list.get(i) : new TextValue("null");
+    }
+
+    public static void checkArray(Value<?> v, int line) {
+        if (!(v instanceof ArrayValue))
+            Utils.abort(line);
+    }
+
+    // Aborts before the index is evaluated when v is neither an array nor
+    // a map.
+    public static void checkIndexable(Value<?> v, int line) {
+        if (!(v instanceof ArrayValue) && !(v instanceof MapValue))
+            Utils.abort(line);
+    }
+
+    public static int size(Value<?> array) {
+        return ((ArrayValue) array).value().size();
+    }
+
+    public static Value<?> element(Value<?> array, int i) {
+        return ((ArrayValue) array).value().get(i);
+    }
+
+    public static String str(Value<?> v) {
+        return v.toString();
+    }
+
+    // Index of the block for v's text in a constant-key switch, or -1.
+    public static int lookup(Value<?> v, Map<String, Integer> table) {
+        Integer target = table.get(v.toString());
+        return target != null ? target : -1;
+    }
+
+    // Whether a case key matches the scrutinee's text. The key is evaluated
+    // twice, as SwitchExpr does: once to test for null, once for its text.
+    public static boolean matches(String scrutinee, Value<?> key1, Value<?> key2) {
+        String key = key1 != null ? key2.toString() : "null";
+        return scrutinee.equals(key);
+    }
+
+    public static void print(Value<?> v, ExecutionContext ctx, boolean newline) {
+        ctx.getOutput().print(v == null ? "null" : v.toString());
+        if (newline)
+            ctx.getOutput().println();
+    }
+
+}
@@ -1,13 +1,14 @@
 package interpreter.command;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
 import interpreter.expr.SetExpr;
+import interpreter.util.InterpreterException;
 import interpreter.util.Utils;
 import interpreter.value.ArrayValue;
 import interpreter.value.MapValue;
@@ -27,9 +28,21 @@ public class AssignCommand extends Command {
         PowerOp;
     }
 
+    // The operand types a compound assignment is specialized for. It is
+    // chosen from the operands of the first execution: two numbers, or
+    // text += text or a number. Operands of other types deoptimize the
+    // command to GENERIC for good.
+    private enum Specialization {
+        UNINITIALIZED,
+        NUMBER,
+        TEXT,
+        GENERIC;
+    }
+
     private SetExpr lhs;
     private Op op;
     private Expr rhs;
+    private Specialization state;
 
     public AssignCommand(int line, SetExpr lhs, Op op, Expr rhs) {
         super(line);
@@ -37,92 +50,173 @@ public class AssignCommand extends Command {
         this.lhs = lhs;
         this.op = op;
         this.rhs = rhs;
+        this.state = Specialization.UNINITIALIZED;
+    }
+
+    public SetExpr getLhs() {
+        return lhs;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public Expr getRhs() {
+        return rhs;
+    }
+
+    public void setRhs(Expr rhs) {
+        this.rhs = rhs;
     }
 
     @Override
-    public void execute() {
-        switch (op) {
-            case StdOp:
-                stdOp();
+    public void execute(ExecutionContext ctx) {
+        if (op == Op.StdOp) {
+            stdOp(ctx);
+            return;
+        }
+
+        Value<?> lvalue = lhs.expr(ctx);
+        Value<?> rvalue = rhs.expr(ctx);
+        Value<?> res = evaluate(lvalue, rvalue);
+        lhs.setValue(ctx, res);
+    }
+
+    private Value<?> evaluate(Value<?> lvalue, Value<?> rvalue) {
+        switch (state) {
+            case UNINITIALIZED:
+                state = specialize(lvalue, rvalue);
+                return evaluate(lvalue, rvalue);
+            case NUMBER:
+                if (lvalue instanceof NumberValue && rvalue instanceof NumberValue)
+                    return NumberValue.of(intOp(op,
+                        ((NumberValue) lvalue).intValue(), ((NumberValue) rvalue).intValue()));
                 break;
+            case TEXT:
+                if (lvalue instanceof TextValue) {
+                    if (rvalue instanceof TextValue)
+                        return ((TextValue) lvalue).concat(((TextValue) rvalue).value());
+                    if (rvalue instanceof NumberValue)
+                        return ((TextValue) lvalue).concat(
+                            String.valueOf(((NumberValue) rvalue).intValue()));
+                }
+                break;
+            default:
+                return apply(super.getLine(), op, lvalue, rvalue);
+        }
+
+        state = Specialization.GENERIC;
+        return apply(super.getLine(), op, lvalue, rvalue);
+    }
+
+    private Specialization specialize(Value<?> lvalue, Value<?> rvalue) {
+        if (lvalue instanceof NumberValue && rvalue instanceof NumberValue)
+            return Specialization.NUMBER;
+        if (op == Op.AddOp && lvalue instanceof TextValue &&
+                (rvalue instanceof TextValue || rvalue instanceof NumberValue))
+            return Specialization.TEXT;
+
+        return Specialization.GENERIC;
+    }
+
+    private static int intOp(Op op, int lv, int rv) {
+        switch (op) {
+            case AddOp:
+                return lv + rv;
+            case SubOp:
+                return lv - rv;
+            case MulOp:
+                return lv * rv;
+            case DivOp:
+                return lv / rv;
+            case ModOp:
+                return lv % rv;
+            default:
+                return (int) Math.pow(lv, rv);
+        }
+    }
+
+    public static Value<?> apply(int line, Op op, Value<?> lvalue, Value<?> rvalue) {
+        Value<?> v = null;
+        switch (op) {
             case AddOp:
-                addOp();
+                v = addOp(line, lvalue, rvalue);
                 break;
             case SubOp:
-                subOp();
+                v = subOp(line, lvalue, rvalue);
                 break;
             case MulOp:
-                mulOp();
+                v = mulOp(line, lvalue, rvalue);
                 break;
             case DivOp:
-                divOp();
+                v = divOp(line, lvalue, rvalue);
                 break;
             case ModOp:
-                modOp();
+                v = modOp(line, lvalue, rvalue);
                 break;
             case PowerOp:
-                powerOp();
+                v = powerOp(line, lvalue, rvalue);
                 break;
             default:
-                Utils.abort(super.getLine());
+                Utils.abort(line);
         }
+
+        return v;
     }
 
-    private void stdOp() {
-        Value<?> rvalue = rhs.expr();
+    private void stdOp(ExecutionContext ctx) {
+        Value<?> rvalue = rhs.expr(ctx);
         try {
-        lhs.setValue(rvalue);
+        lhs.setValue(ctx, rvalue);
+        }catch(InterpreterException e) {
+        	throw e;
         }catch(Exception e) {
         	Utils.abort(super.getLine());
         }
     }
 
-    private void addOp() {
-    	Value<?> lvalue = lhs.expr();
-        Value<?> rvalue = rhs.expr();
+    private static Value<?> addOp(int line, Value<?> lvalue, Value<?> rvalue) {
         if (lvalue instanceof NumberValue && rvalue instanceof NumberValue){
 
 	        NumberValue nvl = (NumberValue) lvalue;
-	        int lv = nvl.value();
+	        int lv = nvl.intValue();
 	
 	        NumberValue nvr = (NumberValue) rvalue;
-	        int rv = nvr.value();
+	        int rv = nvr.intValue();
 	        
 	        lv = lv + rv;
-	        NumberValue x = new NumberValue(lv);
-	        lhs.setValue(x);
+	        NumberValue x = NumberValue.of(lv);
+	        return x;
         }
         else if(lvalue instanceof TextValue && rvalue instanceof TextValue) {
         	TextValue tx1 = (TextValue) lvalue;
-        	String str1 = tx1.value();
         	
         	TextValue tx2 = (TextValue) rvalue;
         	String str2 = tx2.value();
         	
-        	TextValue res = new TextValue(str1+str2);
-        	lhs.setValue(res);
+        	TextValue res = tx1.concat(str2);
+        	return res;
         	
         }
         else if(lvalue instanceof NumberValue && rvalue instanceof TextValue) {
         	NumberValue nv = (NumberValue) lvalue;
-	        int lv = nv.value();
+	        int lv = nv.intValue();
 	        
 	        TextValue tx = (TextValue) rvalue;
         	String str = tx.value();
         	
         	TextValue res = new TextValue(lv+str);
-	        lhs.setValue(res);
+	        return res;
         }
         
         else if(lvalue instanceof TextValue && rvalue instanceof NumberValue) {
         	TextValue tx = (TextValue) lvalue;
-        	String str = tx.value();
         	
         	NumberValue nv = (NumberValue) rvalue;
-	        int lv = nv.value();
+	        int lv = nv.intValue();
         	
-        	TextValue res = new TextValue(str+lv);
-	        lhs.setValue(res);
+        	TextValue res = tx.concat(String.valueOf(lv));
+	        return res;
         }
         
         else if(lvalue instanceof ArrayValue && rvalue instanceof ArrayValue) {
@@ -132,135 +226,118 @@ public class AssignCommand extends Command {
         	ArrayValue array2 = (ArrayValue) rvalue;
         	List<Value<?>> list2 = array2.value();
         	
-        	List<Value<?>> list = new ArrayList<>();
+        	List<Value<?>> list = ArrayValue.copyOf(list1);
         	
-        	for(int i=0; i < list1.size(); i++) {
-        		list.add(list1.get(i));
-        	}
         	for(int i=0; i < list2.size(); i++) {
         		list.add(list2.get(i));
         	}
         	
         	ArrayValue res = new ArrayValue(list);
-        	lhs.setValue(res);        	
+        	return res;        	
         }
         else if(lvalue instanceof MapValue && rvalue instanceof MapValue) {
         	MapValue maplv = (MapValue) lvalue;
         	Map<String, Value<?>> map1 = maplv.value();
-        	Set<String> set1 = map1.keySet();
-        	List<String> list = new ArrayList<String>(set1);
         	
         	MapValue maprv = (MapValue) rvalue;
         	Map<String, Value<?>> map2 = maprv.value();
         	Set<String> set2 = map2.keySet();
         	List<String> list2 = new ArrayList<String>(set2);
         	
-        	Map<String, Value<?>> map = new HashMap<>();
+        	Map<String, Value<?>> map = MapValue.copyOf(map1);
         	
-        	for(int i=0; i < map1.size(); i++) {
-        		map.put(list.get(i), map1.get(list.get(i)));
-        	}
         	for(int i=0; i < map2.size(); i++) {
         		map.put(list2.get(i), map2.get(list2.get(i)));
         	}
         	
         	MapValue res = new MapValue(map);
-        	lhs.setValue(res);
+        	return res;
         }
         
         else {
-        	Utils.abort(super.getLine());
+        	Utils.abort(line);
         }
+        return null;
     }
 
-    private void subOp() {
-    	Value<?> lvalue = lhs.expr();
-        Value<?> rvalue = rhs.expr();
+    private static Value<?> subOp(int line, Value<?> lvalue, Value<?> rvalue) {
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         lv = lv - rv;
-        NumberValue x = new NumberValue(lv);
-        lhs.setValue(x);
+        NumberValue x = NumberValue.of(lv);
+        return x;
     }
 
-    private void mulOp() {
-    	Value<?> lvalue = lhs.expr();
-        Value<?> rvalue = rhs.expr();
+    private static Value<?> mulOp(int line, Value<?> lvalue, Value<?> rvalue) {
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         lv = lv * rv;
-        NumberValue x = new NumberValue(lv);
-        lhs.setValue(x);
+        NumberValue x = NumberValue.of(lv);
+        return x;
     }
 
-    private void divOp() {
-    	Value<?> lvalue = lhs.expr();
-        Value<?> rvalue = rhs.expr();
+    private static Value<?> divOp(int line, Value<?> lvalue, Value<?> rvalue) {
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         lv = lv / rv;
-        NumberValue x = new NumberValue(lv);
-        lhs.setValue(x);
+        NumberValue x = NumberValue.of(lv);
+        return x;
     }
 
-    private void modOp() {
-    	Value<?> lvalue = lhs.expr();
-        Value<?> rvalue = rhs.expr();
+    private static Value<?> modOp(int line, Value<?> lvalue, Value<?> rvalue) {
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         lv = lv % rv;
-        NumberValue x = new NumberValue(lv);
-        lhs.setValue(x);
+        NumberValue x = NumberValue.of(lv);
+        return x;
     }
 
-    private void powerOp() {
-    	Value<?> lvalue = lhs.expr();
-        Value<?> rvalue = rhs.expr();
+    private static Value<?> powerOp(int line, Value<?> lvalue, Value<?> rvalue) {
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         double y = Math.pow(lv, rv);
-        NumberValue x = new NumberValue((int)y);
-        lhs.setValue(x);
+        NumberValue x = NumberValue.of((int)y);
+        return x;
     }
 
 }
@@ -2,6 +2,8 @@ package interpreter.command;
 
 import java.util.List;
 
+import interpreter.ExecutionContext;
+
 public class BlocksCommand extends Command {
 
     private List<Command> cmds;
@@ -12,10 +14,14 @@ public class BlocksCommand extends Command {
         this.cmds = cmds;
     }
 
+    public List<Command> getCommands() {
+        return cmds;
+    }
+
     @Override
-    public void execute() {
+    public void execute(ExecutionContext ctx) {
         for (Command c : cmds)
-            c.execute();
+            c.execute(ctx);
     }
     
 }
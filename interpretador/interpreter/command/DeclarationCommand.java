@@ -1,5 +1,6 @@
 package interpreter.command;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
 
 public abstract class DeclarationCommand extends Command {
@@ -12,6 +13,14 @@ public abstract class DeclarationCommand extends Command {
         this.rhs = rhs;
     }
 
+    public Expr getRhs() {
+        return rhs;
+    }
+
+    public void setRhs(Expr rhs) {
+        this.rhs = rhs;
+    }
+
     @Override
-    public abstract void execute();
+    public abstract void execute(ExecutionContext ctx);
 }
@@ -1,5 +1,6 @@
 package interpreter.command;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
 import interpreter.expr.Variable;
 import interpreter.value.TextValue;
@@ -14,14 +15,18 @@ public class DeclarationType1Command extends DeclarationCommand {
         this.lhs = lhs;
     }
 
+    public Variable getLhs() {
+        return lhs;
+    }
+
     @Override
-    public void execute() {
+    public void execute(ExecutionContext ctx) {
     	if(rhs == null) {
         	TextValue v = new TextValue("null");
-        	lhs.setValue(v);
+        	lhs.setValue(ctx, v);
         }else {
-        	Value<?> v = rhs.expr();
-        	lhs.setValue(v);
+        	Value<?> v = rhs.expr(ctx);
+        	lhs.setValue(ctx, v);
         }
     }
 
@@ -3,6 +3,7 @@ package interpreter.command;
 import java.util.ArrayList;
 import java.util.List;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.ArrayExpr;
 import interpreter.expr.Expr;
 import interpreter.expr.Variable;
@@ -19,23 +20,27 @@ public class DeclarationType2Command extends DeclarationCommand{
 		this.lhs = lhs;
 	}
 
+	public List<Variable> getLhs() {
+		return lhs;
+	}
+
 	@Override
-	public void execute() { 
-		ArrayValue array = (ArrayValue) rhs.expr();
+	public void execute(ExecutionContext ctx) { 
+		ArrayValue array = (ArrayValue) rhs.expr(ctx);
 		
 		if(lhs.size() >= array.value().size()) {
 			int i;
 			for(i=0;i < array.value().size(); i++) {
-			     lhs.get(i).setValue(array.value().get(i));
+			     lhs.get(i).setValue(ctx, array.value().get(i));
 			}
 			for(int j=i; j<lhs.size(); j++) {
 				TextValue v = new TextValue("null");
-				lhs.get(j).setValue(v);
+				lhs.get(j).setValue(ctx, v);
 			}
 		}
 		else {
 			for(int i=0;i < lhs.size(); i++) {
-			     lhs.get(i).setValue(array.value().get(i));
+			     lhs.get(i).setValue(ctx, array.value().get(i));
 			}
 		}
 	}
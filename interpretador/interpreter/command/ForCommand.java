@@ -1,7 +1,8 @@
 package interpreter.command;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
-import interpreter.value.Value;
+import interpreter.expr.InvariantExpr;
 
 public class ForCommand extends Command{
 
@@ -9,6 +10,7 @@ public class ForCommand extends Command{
 	private Expr cond;
 	private Command init;
 	private Command inc;
+	private InvariantExpr[] invariants;
 	
 	
 	public ForCommand(int line, Command cmds, Expr cond, Command init, Command inc) {
@@ -17,20 +19,44 @@ public class ForCommand extends Command{
 		this.cond = cond;
 		this.init = init;
 		this.inc = inc;
+		this.invariants = new InvariantExpr[0];
+	}
+
+	public Command getCommands() {
+		return cmds;
+	}
+
+	public Expr getCond() {
+		return cond;
+	}
+
+	public void setCond(Expr cond) {
+		this.cond = cond;
+	}
+
+	public Command getInit() {
+		return init;
+	}
+
+	public Command getInc() {
+		return inc;
+	}
+
+	// The expressions Hoister found invariant in the condition, body and
+	// increment, forgotten each time the loop starts.
+	public void setInvariants(InvariantExpr[] invariants) {
+		this.invariants = invariants;
 	}
 
 	@Override
-	public void execute() {
-		init.execute();
-		do {
-            Value<?> v = cond.expr();
-            if (v != null && v.eval()) {
-                cmds.execute();
-            	inc.execute();
-            }
-            else
-                break;
-        } while (true);
+	public void execute(ExecutionContext ctx) {
+		for (InvariantExpr e : invariants)
+			e.reset();
+		init.execute(ctx);
+		while (cond.evalBool(ctx)) {
+			cmds.execute(ctx);
+			inc.execute(ctx);
+		}
 	}
 
 }
@@ -1,5 +1,8 @@
 package interpreter.command;
 
+import java.util.List;
+
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
 import interpreter.expr.Variable;
 import interpreter.util.Utils;
@@ -19,15 +22,30 @@ public class ForeachCommand extends Command{
 		this.cmds = cmds;
 	}
 
+	public Variable getVar() {
+		return var;
+	}
+
+	public Expr getExpr() {
+		return expr;
+	}
+
+	public void setExpr(Expr expr) {
+		this.expr = expr;
+	}
+
+	public Command getCommands() {
+		return cmds;
+	}
+
 	@Override
-	public void execute() {
-		//ARRUMAR DEPOIS
-		Value<?> v = expr.expr();
+	public void execute(ExecutionContext ctx) {
+		Value<?> v = expr.expr(ctx);
 		if(v instanceof ArrayValue) {
-			ArrayValue array = (ArrayValue) expr.expr();
-			for(int i=0; i < array.value().size(); i++) {
-				var.setValue(array.value().get(i));
-				cmds.execute();
+			List<Value<?>> list = ((ArrayValue) v).value();
+			for(int i=0; i < list.size(); i++) {
+				var.setValue(ctx, list.get(i));
+				cmds.execute(ctx);
 			}
 		}else {
 			Utils.abort(super.getLine());
@@ -1,7 +1,7 @@
 package interpreter.command;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
-import interpreter.value.Value;
 
 public class IfCommand extends Command{
 	
@@ -19,14 +19,29 @@ public class IfCommand extends Command{
 		this.elseCmds = elseCmds;
 	}
 	
+	public Expr getExpr() {
+		return expr;
+	}
+
+	public void setExpr(Expr expr) {
+		this.expr = expr;
+	}
+
+	public Command getThenCommands() {
+		return thenCmds;
+	}
+
+	public Command getElseCommands() {
+		return elseCmds;
+	}
+
 	@Override
-	public void execute() {
-		Value<?> v = expr.expr();
-		if(v != null && v.eval()) {
-			thenCmds.execute();
+	public void execute(ExecutionContext ctx) {
+		if(expr.evalBool(ctx)) {
+			thenCmds.execute(ctx);
 		}else {
 			if(elseCmds != null) {
-				elseCmds.execute();
+				elseCmds.execute(ctx);
 			}
 		}
 	}
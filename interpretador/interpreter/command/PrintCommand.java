@@ -1,5 +1,6 @@
 package interpreter.command;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
 import interpreter.value.Value;
 
@@ -15,13 +16,25 @@ public class PrintCommand extends Command {
         this.expr = expr;
     }
     
+    public boolean isNewline() {
+        return newline;
+    }
+
+    public Expr getExpr() {
+        return expr;
+    }
+
+    public void setExpr(Expr expr) {
+        this.expr = expr;
+    }
+
     @Override
-    public void execute() {
-        Value<?> v = expr.expr();
+    public void execute(ExecutionContext ctx) {
+        Value<?> v = expr.expr(ctx);
 
         String str = v == null ? "null" : v.toString();
-        System.out.print(str);
+        ctx.getOutput().print(str);
         if (newline)
-            System.out.println();
+            ctx.getOutput().println();
     }
 }
@@ -1,28 +1,46 @@
 package interpreter.command;
 
+import interpreter.ExecutionContext;
 import interpreter.expr.Expr;
-import interpreter.value.Value;
+import interpreter.expr.InvariantExpr;
 
 public class WhileCommand extends Command{
 	
 	private Expr expr;
 	private Command cmds;
+	private InvariantExpr[] invariants;
 	
 	public WhileCommand(int line, Expr expr, Command cmds) {
 		super(line);
 		this.expr = expr;
 		this.cmds = cmds;
+		this.invariants = new InvariantExpr[0];
+	}
+
+	public Expr getExpr() {
+		return expr;
+	}
+
+	public void setExpr(Expr expr) {
+		this.expr = expr;
+	}
+
+	public Command getCommands() {
+		return cmds;
+	}
+
+	// The expressions Hoister found invariant in this loop, forgotten each
+	// time it starts.
+	public void setInvariants(InvariantExpr[] invariants) {
+		this.invariants = invariants;
 	}
 
 	@Override
-	public void execute() {
-		do {
-            Value<?> v = expr.expr();
-            if (v != null && v.eval())
-                cmds.execute();
-            else
-                break;
-        } while (true);	
+	public void execute(ExecutionContext ctx) {
+		for (InvariantExpr e : invariants)
+			e.reset();
+		while (expr.evalBool(ctx))
+			cmds.execute(ctx);
 	}
 
 }
@@ -2,33 +2,176 @@ package interpreter.expr;
 
 import java.util.List;
 
+import interpreter.ExecutionContext;
 import interpreter.util.Utils;
 import interpreter.value.ArrayValue;
+import interpreter.value.IntList;
 import interpreter.value.MapValue;
 import interpreter.value.NumberValue;
 import interpreter.value.TextValue;
 import interpreter.value.Value;
 
 public class AccessExpr extends SetExpr{
+
+	// Inline cache: the kinds of container this site has indexed. A site
+	// that has only seen arrays (or only maps) tests for that kind alone;
+	// one that has seen both is polymorphic and tests for each.
+	private enum Cache {
+		UNINITIALIZED,
+		ARRAY,
+		MAP,
+		POLYMORPHIC;
+	}
 	
 	private Expr index;
 	private Expr base;
+	private Cache cache;
+	// The index's text when it is a constant, hashed once here so map
+	// lookups reuse the String's cached hash code.
+	private String key;
 
 	public AccessExpr(int line, Expr base,Expr index) {
 		super(line);
 		this.base = base;
+		this.cache = Cache.UNINITIALIZED;
+		setIndex(index);
+	}
+
+	public Expr getBase() {
+		return base;
+	}
+
+	public void setBase(Expr base) {
+		this.base = base;
+	}
+
+	public Expr getIndex() {
+		return index;
+	}
+
+	public void setIndex(Expr index) {
 		this.index = index;
+		this.key = null;
+		if (index instanceof ConstExpr && ((ConstExpr) index).getValue() instanceof TextValue) {
+			this.key = ((TextValue) ((ConstExpr) index).getValue()).value();
+			this.key.hashCode();
+		}
 	}
 
 	@Override
-	public Value<?> expr() {
-		Value<?> bvalue = base.expr();
+	public Value<?> expr(ExecutionContext ctx) {
+		Value<?> bvalue = base.expr(ctx);
+		return access(ctx, bvalue);
+	}
+
+	// An element of an array of numbers is read from its int[] without
+	// making a NumberValue.
+	@Override
+	public int evalInt(ExecutionContext ctx) {
+		Value<?> bvalue = base.expr(ctx);
+		if (bvalue instanceof ArrayValue && ((ArrayValue) bvalue).value() instanceof IntList) {
+			IntList ints = (IntList) ((ArrayValue) bvalue).value();
+			if (ints.isInts()) {
+				int i;
+				try {
+					i = index.evalInt(ctx);
+				} catch (UnexpectedValueException e) {
+					throw new UnexpectedValueException(get(super.getLine(), bvalue, e.getValue()));
+				}
+
+				if (i >= 0 && i < ints.size())
+					return ints.intAt(i);
+				throw new UnexpectedValueException(null);
+			}
+		}
+
+		Value<?> v = access(ctx, bvalue);
+		if (v instanceof NumberValue)
+			return ((NumberValue) v).intValue();
+		throw new UnexpectedValueException(v);
+	}
+
+	private Value<?> access(ExecutionContext ctx, Value<?> bvalue) {
+		switch (lookup(bvalue)) {
+			case ARRAY:
+				return element(ctx, (ArrayValue) bvalue);
+			case MAP:
+				return entry(ctx, (MapValue) bvalue);
+			default:
+				// Neither an array nor a map: abort before the index is
+				// evaluated.
+				Utils.abort(super.getLine());
+				return null;
+		}
+	}
+
+	// The kind of container bvalue is, testing first for the kinds this
+	// site has seen, or UNINITIALIZED when it is not a container.
+	private Cache lookup(Value<?> bvalue) {
+		switch (cache) {
+			case ARRAY:
+				if (bvalue instanceof ArrayValue)
+					return Cache.ARRAY;
+				break;
+			case MAP:
+				if (bvalue instanceof MapValue)
+					return Cache.MAP;
+				break;
+			case POLYMORPHIC:
+				if (bvalue instanceof ArrayValue)
+					return Cache.ARRAY;
+				if (bvalue instanceof MapValue)
+					return Cache.MAP;
+				return Cache.UNINITIALIZED;
+			default:
+				break;
+		}
+
+		Cache kind;
+		if (bvalue instanceof ArrayValue)
+			kind = Cache.ARRAY;
+		else if (bvalue instanceof MapValue)
+			kind = Cache.MAP;
+		else
+			return Cache.UNINITIALIZED;
+
+		cache = cache == Cache.UNINITIALIZED ? kind : Cache.POLYMORPHIC;
+		return kind;
+	}
+
+	// An array's index is evaluated unboxed, so a numeric index is never
+	// wrapped in a NumberValue.
+	private Value<?> element(ExecutionContext ctx, ArrayValue array) {
+		int i;
+		try {
+			i = index.evalInt(ctx);
+		} catch (UnexpectedValueException e) {
+			return get(super.getLine(), array, e.getValue());
+		}
+
+		List<Value<?>> lista = array.value();
+		if (i >= 0 && i < lista.size())
+			return lista.get(i);
+		else
+			return null;
+	}
+
+	private Value<?> entry(ExecutionContext ctx, MapValue map) {
+		if (key != null)
+			return map.value().get(key);
+
+		Value<?> v = index.expr(ctx);
+		if (v instanceof TextValue)
+			return map.value().get(((TextValue) v).value());
+		return get(super.getLine(), map, v);
+	}
+
+	public static Value<?> get(int line, Value<?> bvalue, Value<?> v) {
 		if (bvalue instanceof ArrayValue) {
 			ArrayValue array = (ArrayValue) bvalue;
-			Value <?> v = index.expr();
 			if(v instanceof NumberValue) {
 				NumberValue value = (NumberValue) v;
-				int indice = value.value();
+				int indice = value.intValue();
 				
 				List<Value<?>> lista = array.value();
 				if (indice >= 0 && indice < lista.size())
@@ -36,68 +179,95 @@ public class AccessExpr extends SetExpr{
 				else
 					return null;
 			}else {
-				Utils.abort(super.getLine());
+				Utils.abort(line);
 			}
 		} else if (bvalue instanceof MapValue) {
 			MapValue map = (MapValue) bvalue;
 			
-			Value <?> v = index.expr();
 			if(v instanceof TextValue) {
 				TextValue value = (TextValue) v;
 				String key = value.value();
 				return map.value().get(key);
 			}else {
-				Utils.abort(super.getLine());
+				Utils.abort(line);
 			}
 		} else {
-			Utils.abort(super.getLine());
+			Utils.abort(line);
 		}
 		
 		return null;
 	}
 
 	@Override
-	public void setValue(Value<?> value) {
-		Value<?> bvalue = base.expr();
+	public void setValue(ExecutionContext ctx, Value<?> value) {
+		Value<?> bvalue = base.expr(ctx);
+		switch (lookup(bvalue)) {
+			case ARRAY:
+				int n;
+				try {
+					n = index.evalInt(ctx);
+				} catch (UnexpectedValueException e) {
+					set(super.getLine(), bvalue, e.getValue(), value);
+					return;
+				}
+				setElement((ArrayValue) bvalue, n, value);
+				return;
+			case MAP:
+				if (key != null) {
+					((MapValue) bvalue).value().put(key, value);
+					return;
+				}
+				break;
+			default:
+				Utils.abort(super.getLine());
+				return;
+		}
+
+		Value<?> v = index.expr(ctx);
+		set(super.getLine(), bvalue, v, value);
+	}
+
+	public static void set(int line, Value<?> bvalue, Value<?> v, Value<?> value) {
 		if(bvalue instanceof ArrayValue) {
 			ArrayValue array = (ArrayValue) bvalue;
-			Value <?> v = index.expr();
 			if(v instanceof NumberValue) {
 				NumberValue indice = (NumberValue) v;
-				int n = indice.value();
-				if( n < array.value().size()) {
-					array.value().set(n, value);
-				}
-				else if(n > array.value().size()){
-					for(int i=array.value().size(); i < n; i++) {
-						TextValue t = new TextValue("null");
-						array.value().add(i, t);
-					}
-					array.value().add(n, value);
-				}
-				else {
-					array.value().add(n, value);
-				}
-				
+				int n = indice.intValue();
+				setElement(array, n, value);
 			}
 			else {
-				Utils.abort(super.getLine());
+				Utils.abort(line);
 			}
 		}
 		else if(bvalue instanceof MapValue){
 			MapValue map = (MapValue) bvalue;
-			Value<?> t = index.expr();
-			if(t instanceof TextValue) {
-				TextValue value2 = (TextValue) t;
+			if(v instanceof TextValue) {
+				TextValue value2 = (TextValue) v;
 				String key = value2.value();
 				map.value().put(key, value);
 			}
 			else {
-				Utils.abort(super.getLine());
+				Utils.abort(line);
+			}
+		}
+		else {
+			Utils.abort(line);
+		}
+	}
+
+	private static void setElement(ArrayValue array, int n, Value<?> value) {
+		if( n < array.value().size()) {
+			array.set(n, value);
+		}
+		else if(n > array.value().size()){
+			for(int i=array.value().size(); i < n; i++) {
+				TextValue t = new TextValue("null");
+				array.add(t);
 			}
+			array.add(value);
 		}
 		else {
-			Utils.abort(super.getLine());
+			array.add(value);
 		}
 	}
 
@@ -3,6 +3,7 @@ package interpreter.expr;
 import java.util.ArrayList;
 import java.util.List;
 
+import interpreter.ExecutionContext;
 import interpreter.value.ArrayValue;
 import interpreter.value.Value;
 
@@ -15,11 +16,15 @@ public class ArrayExpr extends Expr{
 	}
 
 	
+	public List<Expr> getList() {
+		return list;
+	}
+
 	@Override
-	public Value<?> expr() {
-		List<Value<?>> list2 = new ArrayList<Value<?>>();
+	public Value<?> expr(ExecutionContext ctx) {
+		List<Value<?>> list2 = ArrayValue.newList();
 		for(int i=0; i < list.size(); i++) {
-			list2.add(list.get(i).expr());
+			list2.add(list.get(i).expr(ctx));
 		}
 		ArrayValue v = new ArrayValue(list2);
 		return v;
@@ -1,11 +1,11 @@
 package interpreter.expr;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import interpreter.ExecutionContext;
 import interpreter.util.Utils;
 import interpreter.value.ArrayValue;
 import interpreter.value.BooleanValue;
@@ -35,9 +35,20 @@ public class BinaryExpr extends Expr {
         PowerOp;
     }
 
+    // The operand types this node is specialized for. Every node starts as
+    // NUMBER; the first operands that are not numbers move it to TEXT when
+    // they are text for +, == or !=, and to GENERIC otherwise. A TEXT node
+    // that meets other types deoptimizes to GENERIC, which is final.
+    private enum Specialization {
+        NUMBER,
+        TEXT,
+        GENERIC;
+    }
+
     private Expr left;
     private Op op;
     private Expr right;
+    private Specialization state;
 
     public BinaryExpr(int line, Expr left, Op op, Expr right) {
         super(line);
@@ -45,117 +56,304 @@ public class BinaryExpr extends Expr {
         this.left = left;
         this.op = op;
         this.right = right;
+        this.state = Specialization.NUMBER;
+    }
+
+    public Expr getLeft() {
+        return left;
+    }
+
+    public void setLeft(Expr left) {
+        this.left = left;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public Expr getRight() {
+        return right;
+    }
+
+    public void setRight(Expr right) {
+        this.right = right;
+    }
+
+    // Arithmetic and comparisons speculate that both operands are numbers
+    // and run on unboxed ints. The first operand that is not a number ends
+    // that speculation for this node, see Specialization.
+    @Override
+    public Value<?> expr(ExecutionContext ctx) {
+        if (state == Specialization.NUMBER) {
+            if (isArithmetic()) {
+                try {
+                    return NumberValue.of(evalInt(ctx));
+                } catch (UnexpectedValueException e) {
+                    return e.getValue();
+                }
+            } else if (isComparison()) {
+                return BooleanValue.of(evalBool(ctx));
+            }
+        } else if (state == Specialization.TEXT) {
+            return evalText(ctx);
+        }
+
+        if (!ctx.isEager() && (op == Op.AndOp || op == Op.OrOp))
+            return BooleanValue.of(evalBool(ctx));
+
+        Value<?> lvalue = left.expr(ctx);
+        Value<?> rvalue = right.expr(ctx);
+        return apply(super.getLine(), op, lvalue, rvalue);
     }
 
     @Override
-    public Value<?> expr() {
+    public int evalInt(ExecutionContext ctx) {
+        if (state != Specialization.NUMBER || !isArithmetic())
+            return super.evalInt(ctx);
+
+        int lv;
+        try {
+            lv = left.evalInt(ctx);
+        } catch (UnexpectedValueException e) {
+            Value<?> rvalue = right.expr(ctx);
+            state = specialize(e.getValue(), rvalue);
+            return toInt(apply(super.getLine(), op, e.getValue(), rvalue));
+        }
+
+        int rv;
+        try {
+            rv = right.evalInt(ctx);
+        } catch (UnexpectedValueException e) {
+            state = Specialization.GENERIC;
+            return toInt(apply(super.getLine(), op, NumberValue.of(lv), e.getValue()));
+        }
+
+        switch (op) {
+            case AddOp:
+                return lv + rv;
+            case SubOp:
+                return lv - rv;
+            case MulOp:
+                return lv * rv;
+            case DivOp:
+                return lv / rv;
+            case ModOp:
+                return lv % rv;
+            default:
+                return (int) Math.pow(lv, rv);
+        }
+    }
+
+    @Override
+    public boolean evalBool(ExecutionContext ctx) {
+        if (op == Op.AndOp) {
+            if (!ctx.isEager())
+                return left.evalBool(ctx) && right.evalBool(ctx);
+
+            boolean b1 = left.evalBool(ctx);
+            boolean b2 = right.evalBool(ctx);
+            return b1 && b2;
+        }
+
+        if (op == Op.OrOp && !ctx.isEager())
+            return left.evalBool(ctx) || right.evalBool(ctx);
+
+        if (state != Specialization.NUMBER || !isComparison())
+            return super.evalBool(ctx);
+
+        int lv;
+        try {
+            lv = left.evalInt(ctx);
+        } catch (UnexpectedValueException e) {
+            Value<?> rvalue = right.expr(ctx);
+            state = specialize(e.getValue(), rvalue);
+            return toBool(apply(super.getLine(), op, e.getValue(), rvalue));
+        }
+
+        int rv;
+        try {
+            rv = right.evalInt(ctx);
+        } catch (UnexpectedValueException e) {
+            state = Specialization.GENERIC;
+            return toBool(apply(super.getLine(), op, NumberValue.of(lv), e.getValue()));
+        }
+
+        switch (op) {
+            case EqualOp:
+                return lv == rv;
+            case NotEqualOp:
+                return lv != rv;
+            case LowerThanOp:
+                return lv < rv;
+            case LowerEqualOp:
+                return lv <= rv;
+            case GreaterThanOp:
+                return lv > rv;
+            default:
+                return lv >= rv;
+        }
+    }
+
+    // Text on the left: concatenation with text or a number, or comparison
+    // with text, without apply()'s chain of type tests.
+    private Value<?> evalText(ExecutionContext ctx) {
+        Value<?> lvalue = left.expr(ctx);
+        Value<?> rvalue = right.expr(ctx);
+        if (lvalue instanceof TextValue) {
+            TextValue tv = (TextValue) lvalue;
+            if (rvalue instanceof TextValue) {
+                String rv = ((TextValue) rvalue).value();
+                if (op == Op.AddOp)
+                    return tv.concat(rv);
+
+                boolean equal = tv.value().equals(rv);
+                return BooleanValue.of(op == Op.EqualOp ? equal : !equal);
+            }
+
+            if (op == Op.AddOp && rvalue instanceof NumberValue)
+                return tv.concat(String.valueOf(((NumberValue) rvalue).intValue()));
+        }
+
+        state = Specialization.GENERIC;
+        return apply(super.getLine(), op, lvalue, rvalue);
+    }
+
+    private Specialization specialize(Value<?> lvalue, Value<?> rvalue) {
+        if (lvalue instanceof TextValue) {
+            if ((op == Op.EqualOp || op == Op.NotEqualOp || op == Op.AddOp) &&
+                    rvalue instanceof TextValue)
+                return Specialization.TEXT;
+            if (op == Op.AddOp && rvalue instanceof NumberValue)
+                return Specialization.TEXT;
+        }
+
+        return Specialization.GENERIC;
+    }
+
+    private boolean isArithmetic() {
+        return op == Op.AddOp || op == Op.SubOp || op == Op.MulOp ||
+            op == Op.DivOp || op == Op.ModOp || op == Op.PowerOp;
+    }
+
+    private boolean isComparison() {
+        return op == Op.EqualOp || op == Op.NotEqualOp ||
+            op == Op.LowerThanOp || op == Op.LowerEqualOp ||
+            op == Op.GreaterThanOp || op == Op.GreaterEqualOp;
+    }
+
+    private static int toInt(Value<?> v) {
+        if (v instanceof NumberValue)
+            return ((NumberValue) v).intValue();
+
+        throw new UnexpectedValueException(v);
+    }
+
+    private static boolean toBool(Value<?> v) {
+        return v != null && v.eval();
+    }
+
+    public static Value<?> apply(int line, Op op, Value<?> lvalue, Value<?> rvalue) {
         Value<?> v = null;
         switch (op) {
             case AndOp:
-                v = andOp();
+                v = andOp(line, lvalue, rvalue);
                 break;
             case OrOp:
-                v = orOp();
+                v = orOp(line, lvalue, rvalue);
                 break;
             case EqualOp:
-                v = equalOp();
+                v = equalOp(line, lvalue, rvalue);
                 break;
             case NotEqualOp:
-                v = notEqualOp();
+                v = notEqualOp(line, lvalue, rvalue);
                 break;
             case LowerThanOp:
-                v = lowerThanOp();
+                v = lowerThanOp(line, lvalue, rvalue);
                 break;
             case LowerEqualOp:
-                v = lowerEqualOp();
+                v = lowerEqualOp(line, lvalue, rvalue);
                 break;
             case GreaterThanOp:
-                v = greaterThanOp();
+                v = greaterThanOp(line, lvalue, rvalue);
                 break;
             case GreaterEqualOp:
-                v = greaterEqualOp();
+                v = greaterEqualOp(line, lvalue, rvalue);
                 break;
             case ContainsOp:
-                v = containsOp();
+                v = containsOp(line, lvalue, rvalue);
                 break;
             case NotContainsOp:
-                v = notContainsOp();
+                v = notContainsOp(line, lvalue, rvalue);
                 break;
             case AddOp:
-                v = addOp();
+                v = addOp(line, lvalue, rvalue);
                 break;
             case SubOp:
-                v = subOp();
+                v = subOp(line, lvalue, rvalue);
                 break;
             case MulOp:
-                v = mulOp();
+                v = mulOp(line, lvalue, rvalue);
                 break;
             case DivOp:
-                v = divOp();
+                v = divOp(line, lvalue, rvalue);
                 break;
             case ModOp:
-                v = modOp();
+                v = modOp(line, lvalue, rvalue);
                 break;
             case PowerOp:
-                v = powerOp();
+                v = powerOp(line, lvalue, rvalue);
                 break;
             default:
-                Utils.abort(super.getLine());
+                Utils.abort(line);
         }
 
         return v;
     }
 
-    private Value<?> andOp() {
-    	Value<?> v1 = left.expr();
-    	Value<?> v2 = right.expr();
+    private static Value<?> andOp(int line, Value<?> v1, Value<?> v2) {
     	if(v1!=null && v2!=null && v1.eval() && v2.eval()) {
-    		BooleanValue res = new BooleanValue(true);
+    		BooleanValue res = BooleanValue.of(true);
         	return res;
     	}
-    	BooleanValue res = new BooleanValue(false);
+    	BooleanValue res = BooleanValue.of(false);
     	return res;
     }
 
-    private Value<?> orOp() {
-    	Value<?> v1 = left.expr();
-    	Value<?> v2 = right.expr();
+    private static Value<?> orOp(int line, Value<?> v1, Value<?> v2) {
     	if(v1!=null && v2!=null && (v1.eval() || v2.eval())) {
-    		BooleanValue res = new BooleanValue(true);
+    		BooleanValue res = BooleanValue.of(true);
         	return res;
     	}
-    	BooleanValue res = new BooleanValue(false);
+    	BooleanValue res = BooleanValue.of(false);
     	return res;
     }
 
-    private Value<?> equalOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> equalOp(int line, Value<?> lvalue, Value<?> rvalue) {
         BooleanValue res = null;
 
         if (lvalue instanceof NumberValue && rvalue instanceof NumberValue) {
 
 	        NumberValue nvl = (NumberValue) lvalue;
-	        int lv = nvl.value();
+	        int lv = nvl.intValue();
 	
 	        NumberValue nvr = (NumberValue) rvalue;
-	        int rv = nvr.value();
+	        int rv = nvr.intValue();
 	        
 	        if(lv == rv ) {
-	        	res = new BooleanValue(true);
+	        	res = BooleanValue.of(true);
 	        	return res;
 	        }
-	        res = new BooleanValue(false);
+	        res = BooleanValue.of(false);
         }
         else if(lvalue.value().equals("null")) {
         	if(rvalue == null) {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
         	}
         	else if(rvalue.value().equals("null")) {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
         	}
         	else {
-        		res = new BooleanValue(false);
+        		res = BooleanValue.of(false);
         	}
         }
         else if(lvalue instanceof TextValue && rvalue instanceof TextValue) {
@@ -166,10 +364,10 @@ public class BinaryExpr extends Expr {
         	String str2 = tx2.value();
         	
         	if(str1.equals(str2)){
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
 	        	return res;
         	}
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else if(lvalue instanceof ArrayValue && rvalue instanceof ArrayValue) {
         	ArrayValue array1 = (ArrayValue) lvalue;
@@ -179,10 +377,10 @@ public class BinaryExpr extends Expr {
         	List<Value<?>> list2 = array2.value();
         	
         	if(list1.equals(list2)) {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
 	        	return res;
         	}
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else if(lvalue instanceof MapValue && rvalue instanceof MapValue) {
         	MapValue mv1 = (MapValue) lvalue;
@@ -192,44 +390,42 @@ public class BinaryExpr extends Expr {
         	Map<String, Value<?>> map2 = mv2.value();
         	
         	if(map1.equals(map2)) {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
 	        	return res;
         	}
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else {
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         return res;
     }
 
-    private Value<?> notEqualOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> notEqualOp(int line, Value<?> lvalue, Value<?> rvalue) {
         BooleanValue res = null;
 
         if (lvalue instanceof NumberValue && rvalue instanceof NumberValue) {
 	        NumberValue nvl = (NumberValue) lvalue;
-	        int lv = nvl.value();
+	        int lv = nvl.intValue();
 	
 	        NumberValue nvr = (NumberValue) rvalue;
-	        int rv = nvr.value();
+	        int rv = nvr.intValue();
 	        
 	        if(lv != rv ) {
-	        	res = new BooleanValue(true);
+	        	res = BooleanValue.of(true);
 	        	return res;
 	        }
-	        res = new BooleanValue(false);
+	        res = BooleanValue.of(false);
         }
         else if(lvalue.value().equals("null")) {
         	if(rvalue == null) {
-        		res = new BooleanValue(false);
+        		res = BooleanValue.of(false);
         	}
         	else if(rvalue.value().equals("null")) {
-        		res = new BooleanValue(false);
+        		res = BooleanValue.of(false);
         	}
         	else {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
         	}
         }
         else if(lvalue instanceof TextValue && rvalue instanceof TextValue) {
@@ -240,10 +436,10 @@ public class BinaryExpr extends Expr {
         	String str2 = tx2.value();
         	
         	if(!str1.equals(str2)){
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
 	        	return res;
         	}
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else if(lvalue instanceof ArrayValue && rvalue instanceof ArrayValue) {
         	ArrayValue array1 = (ArrayValue) lvalue;
@@ -253,10 +449,10 @@ public class BinaryExpr extends Expr {
         	List<Value<?>> list2 = array2.value();
         	
         	if(!list1.equals(list2)) {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
 	        	return res;
         	}
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else if(lvalue instanceof MapValue && rvalue instanceof MapValue) {
         	MapValue mv1 = (MapValue) lvalue;
@@ -266,130 +462,114 @@ public class BinaryExpr extends Expr {
         	Map<String, Value<?>> map2 = mv2.value();
         	
         	if(!map1.equals(map2)) {
-        		res = new BooleanValue(true);
+        		res = BooleanValue.of(true);
 	        	return res;
         	}
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else {
-        	res = new BooleanValue(true);
+        	res = BooleanValue.of(true);
         }
         return res;
     }
 
-    private Value<?> lowerThanOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> lowerThanOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         if(lv < rv) {
-        	BooleanValue res = new BooleanValue(true);
+        	BooleanValue res = BooleanValue.of(true);
         	return res;
         }
         
-        BooleanValue res = new BooleanValue(false);
+        BooleanValue res = BooleanValue.of(false);
         return res;
     }
 
-    private Value<?> lowerEqualOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> lowerEqualOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         if(lv < rv || lv == rv) {
-        	BooleanValue res = new BooleanValue(true);
+        	BooleanValue res = BooleanValue.of(true);
         	return res;
         }
         
-        BooleanValue res = new BooleanValue(false);
+        BooleanValue res = BooleanValue.of(false);
         return res;
     }
 
-    private Value<?> greaterThanOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> greaterThanOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         if(lv > rv ) {
-        	BooleanValue res = new BooleanValue(true);
+        	BooleanValue res = BooleanValue.of(true);
         	return res;
         }
         
-        BooleanValue res = new BooleanValue(false);
+        BooleanValue res = BooleanValue.of(false);
         return res;
     }
 
-    private Value<?> greaterEqualOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> greaterEqualOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         if(lv > rv || lv == rv) {
-        	BooleanValue res = new BooleanValue(true);
+        	BooleanValue res = BooleanValue.of(true);
         	return res;
         }
         
-        BooleanValue res = new BooleanValue(false);
+        BooleanValue res = BooleanValue.of(false);
         return res;
     }
 
-    private Value<?> containsOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> containsOp(int line, Value<?> lvalue, Value<?> rvalue) {
         BooleanValue bv = null;
         if(rvalue instanceof ArrayValue) {
         	ArrayValue array = (ArrayValue) rvalue;
         	List<Value<?>> list = array.value();
         	if(lvalue instanceof NumberValue || lvalue instanceof TextValue) {
-	        		for(int i=0; i<list.size(); i++) {
-	        			if(lvalue.equals(list.get(i))) {
-	        				bv = new BooleanValue(true);
-	        				break;
-	        			}
-	        			else {
-	        				bv = new BooleanValue(false);
-	        			}
+	        		if(!list.isEmpty()) {
+	        			bv = BooleanValue.of(array.contains(lvalue));
 	        		}
 	        		return bv;
         	}
         	else {
-        		Utils.abort(super.getLine());
+        		Utils.abort(line);
         	}
         	
         }
@@ -399,75 +579,63 @@ public class BinaryExpr extends Expr {
 	        	TextValue tx = (TextValue) lvalue;
 	        	String key = tx.value();
 	        	Map<String, Value<?>> map = map1.value();
-	        	Set<String> set1 = map.keySet();
-	        	List<String> list = new ArrayList<>(set1);
-	        	for(int i=0; i < map.size(); i++) {
-	        		if(key.equals(list.get(i))) {
-	        			bv = new BooleanValue(true);
-	        			break;
-	        		}
-	        		else {
-	        			bv = new BooleanValue(false);
-	        		}
+	        	if(!map.isEmpty()) {
+	        		bv = BooleanValue.of(map.containsKey(key));
 	        	}
         	}
         	else {
-        		Utils.abort(super.getLine());
+        		Utils.abort(line);
         	}
         	return bv;
         }
         else {
-        	Utils.abort(super.getLine());
+        	Utils.abort(line);
         }
     	return null;
     }
 
-    private Value<?> notContainsOp() {
-        BooleanValue bv = (BooleanValue) containsOp();
+    private static Value<?> notContainsOp(int line, Value<?> lvalue, Value<?> rvalue) {
+        BooleanValue bv = (BooleanValue) containsOp(line, lvalue, rvalue);
         BooleanValue res = null;
         boolean x = bv.value();
         if(x == true) {
-        	res = new BooleanValue(false);
+        	res = BooleanValue.of(false);
         }
         else {
-        	res = new BooleanValue(true);
+        	res = BooleanValue.of(true);
         }
     	return res;
     }
 
-    private Value<?> addOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> addOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if ((lvalue instanceof NumberValue) && (rvalue instanceof NumberValue)) {
            
 	        NumberValue nvl = (NumberValue) lvalue;
-	        int lv = nvl.value();
+	        int lv = nvl.intValue();
 	
 	        NumberValue nvr = (NumberValue) rvalue;
-	        int rv = nvr.value();
+	        int rv = nvr.intValue();
 	
-	        NumberValue res = new NumberValue(lv + rv);
+	        NumberValue res = NumberValue.of(lv + rv);
 	        return res;
         }
         else if((lvalue instanceof TextValue) && (rvalue instanceof TextValue)) {
         	
         	TextValue tx1 = (TextValue) lvalue;
-        	String lv = tx1.value();
         	
         	TextValue tx2 = (TextValue) rvalue;
         	String rv = tx2.value();
         	
-        	TextValue res = new TextValue(lv+rv);
+        	TextValue res = tx1.concat(rv);
         	return res;
         }
         else if(lvalue instanceof TextValue && rvalue == null){
         	TextValue tx1 = (TextValue) lvalue;
-        	String lv = tx1.value();
         	
         	String rv = "null";
         	
-        	TextValue res = new TextValue(lv+rv);
+        	TextValue res = tx1.concat(rv);
         	return res;
         }
         else if(lvalue == null && rvalue instanceof TextValue){
@@ -483,7 +651,7 @@ public class BinaryExpr extends Expr {
         else if((lvalue instanceof NumberValue) && (rvalue instanceof TextValue)) {
         	
         	NumberValue nvl = (NumberValue) lvalue;
-	        int lv = nvl.value();
+	        int lv = nvl.intValue();
 	        
 	        TextValue tx2 = (TextValue) rvalue;
         	String rv = tx2.value();
@@ -494,12 +662,11 @@ public class BinaryExpr extends Expr {
         else if((lvalue instanceof TextValue) && (rvalue instanceof NumberValue)) {
         	
         	TextValue tx1 = (TextValue) lvalue;
-        	String lv = tx1.value();
         	
         	NumberValue nvr = (NumberValue) rvalue;
-	        int rv = nvr.value();
+	        int rv = nvr.intValue();
 	        
-	        TextValue res = new TextValue(lv+rv);
+	        TextValue res = tx1.concat(String.valueOf(rv));
         	return res;
         }
         else if((lvalue instanceof TextValue && rvalue instanceof ArrayValue) ||
@@ -507,10 +674,15 @@ public class BinaryExpr extends Expr {
         		(lvalue instanceof TextValue && rvalue instanceof MapValue)   ||
         		(lvalue instanceof MapValue && rvalue instanceof TextValue)   ){
         	
-        	String str1 = lvalue.toString();
         	String str2 = rvalue.toString();
         	
-        	TextValue res = new TextValue(str1+str2);
+        	TextValue res;
+        	if(lvalue instanceof TextValue) {
+        		res = ((TextValue) lvalue).concat(str2);
+        	}
+        	else {
+        		res = new TextValue(lvalue.toString()+str2);
+        	}
         	return res;
         }
         else if((lvalue instanceof ArrayValue) && (rvalue instanceof ArrayValue)) {
@@ -521,11 +693,8 @@ public class BinaryExpr extends Expr {
         	ArrayValue array2 = (ArrayValue) rvalue;
         	List<Value<?>> list2 = array2.value();
         	
-        	List<Value<?>> list = new ArrayList<>();
+        	List<Value<?>> list = ArrayValue.copyOf(list1);
         	
-        	for(int i=0; i < list1.size(); i++) {
-        		list.add(list1.get(i));
-        	}
         	for(int i=0; i < list2.size(); i++) {
         		list.add(list2.get(i));
         	}
@@ -537,19 +706,14 @@ public class BinaryExpr extends Expr {
         	
         	MapValue maplv = (MapValue) lvalue;
         	Map<String, Value<?>> map1 = maplv.value();
-        	Set<String> set1 = map1.keySet();
-        	List<String> list = new ArrayList<String>(set1);
         	
         	MapValue maprv = (MapValue) rvalue;
         	Map<String, Value<?>> map2 = maprv.value();
         	Set<String> set2 = map2.keySet();
         	List<String> list2 = new ArrayList<String>(set2);
         	
-        	Map<String, Value<?>> map = new HashMap<>();
+        	Map<String, Value<?>> map = MapValue.copyOf(map1);
         	
-        	for(int i=0; i < map1.size(); i++) {
-        		map.put(list.get(i), map1.get(list.get(i)));
-        	}
         	for(int i=0; i < map2.size(); i++) {
         		map.put(list2.get(i), map2.get(list2.get(i)));
         	}
@@ -558,100 +722,90 @@ public class BinaryExpr extends Expr {
         	return res;
         }
         else {
-        	Utils.abort(super.getLine());
+        	Utils.abort(line);
         }
         return null;
     }
-    private Value<?> subOp() {
-        Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> subOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
 
-        NumberValue res = new NumberValue(lv - rv);
+        NumberValue res = NumberValue.of(lv - rv);
         return res;
     }
 
-    private Value<?> mulOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> mulOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
 
-        NumberValue res = new NumberValue(lv * rv);
+        NumberValue res = NumberValue.of(lv * rv);
         return res;
     }
 
-    private Value<?> divOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> divOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
 
-        NumberValue res = new NumberValue(lv / rv);
+        NumberValue res = NumberValue.of(lv / rv);
         return res;
     }
 
-    private Value<?> modOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> modOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
 
-        NumberValue res = new NumberValue(lv % rv);
+        NumberValue res = NumberValue.of(lv % rv);
         return res;
     }
 
-    private Value<?> powerOp() {
-    	Value<?> lvalue = left.expr();
-        Value<?> rvalue = right.expr();
+    private static Value<?> powerOp(int line, Value<?> lvalue, Value<?> rvalue) {
 
         if (!(lvalue instanceof NumberValue) ||
             !(rvalue instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nvl = (NumberValue) lvalue;
-        int lv = nvl.value();
+        int lv = nvl.intValue();
 
         NumberValue nvr = (NumberValue) rvalue;
-        int rv = nvr.value();
+        int rv = nvr.intValue();
         
         double d = Math.pow(lv, rv);
         int c = (int) d;
         
-        NumberValue res = new NumberValue(c);
+        NumberValue res = NumberValue.of(c);
         return res;
     }
     
@@ -2,6 +2,7 @@ package interpreter.expr;
 import java.util.List;
 import java.util.Map;
 
+import interpreter.ExecutionContext;
 import interpreter.util.Utils;
 import interpreter.value.ArrayValue;
 import interpreter.value.BooleanValue;
@@ -26,9 +27,25 @@ public class CastExpr extends Expr{
 		this.op = op;
 	}
 
+	public Expr getExpr() {
+		return expr;
+	}
+
+	public void setExpr(Expr expr) {
+		this.expr = expr;
+	}
+
+	public CastOp getOp() {
+		return op;
+	}
+
 	@Override
-	public Value<?> expr() {
-		Value<?> value = expr.expr();
+	public Value<?> expr(ExecutionContext ctx) {
+		Value<?> value = expr.expr(ctx);
+		return apply(super.getLine(), op, value);
+	}
+
+	public static Value<?> apply(int line, CastOp op, Value<?> value) {
 		NumberValue nv = null;
 		TextValue tv = null;
 		BooleanValue bv = null;
@@ -37,7 +54,7 @@ public class CastExpr extends Expr{
 			
 		if(value == null) {
 			if(op == CastOp.IntegerOp) {
-				NumberValue res = new NumberValue(0);
+				NumberValue res = NumberValue.of(0);
 				return res;
 			}
 			else if(op == CastOp.StringOp) {
@@ -45,7 +62,7 @@ public class CastExpr extends Expr{
 				return res;
 			}
 			else if(op == CastOp.BooleanOp) {
-				BooleanValue res = new BooleanValue(false);
+				BooleanValue res = BooleanValue.of(false);
 				return res;
 			}
 		}
@@ -59,10 +76,10 @@ public class CastExpr extends Expr{
 				String str = tv.value();
 				try {
 					int number = Integer.parseInt(str);
-					nv = new NumberValue(number);
+					nv = NumberValue.of(number);
 					return nv;
 				}catch(Exception e){
-					nv = new NumberValue(0);
+					nv = NumberValue.of(0);
 					return nv;
 				}
 			}
@@ -70,16 +87,16 @@ public class CastExpr extends Expr{
 				bv = (BooleanValue) value;
 				boolean b = bv.value();
 				if(b == true) {
-					nv = new NumberValue(1);
+					nv = NumberValue.of(1);
 					return nv;
 				}
 				else {
-					nv = new NumberValue(0);
+					nv = NumberValue.of(0);
 					return nv;
 				}
 			}
 			else{
-				nv = new NumberValue(0);
+				nv = NumberValue.of(0);
 				return nv;
 			}
 		}
@@ -92,30 +109,30 @@ public class CastExpr extends Expr{
 			
 			if(value instanceof NumberValue) {
 				nv = (NumberValue) value;
-				int number = nv.value();
+				int number = nv.intValue();
 				if(number == 0) {
-					bv = new BooleanValue(false);
+					bv = BooleanValue.of(false);
 					return bv;
 				}
 				else {
-					bv = new BooleanValue(true);
+					bv = BooleanValue.of(true);
 					return bv;
 				}
 			}
 			else if(value instanceof TextValue){
-				bv = new BooleanValue(true);
+				bv = BooleanValue.of(true);
 				return bv;
 			}
 			else if(value instanceof BooleanValue){
 				bv = (BooleanValue) value;
 				boolean b = bv.value();
 				if(b == true) {
-					bv = new BooleanValue(true);
+					bv = BooleanValue.of(true);
 					return bv;
 				}
 				else
 				{
-					bv = new BooleanValue(false);
+					bv = BooleanValue.of(false);
 					return bv;
 				}
 			}
@@ -123,11 +140,11 @@ public class CastExpr extends Expr{
 				array = (ArrayValue) value;
 				List<Value<?>> list = array.value();
 				if(list.size() == 0) {
-					bv = new BooleanValue(false);
+					bv = BooleanValue.of(false);
 					return bv;
 				}
 				else {
-					bv = new BooleanValue(true);
+					bv = BooleanValue.of(true);
 					return bv;
 				}
 			}
@@ -135,18 +152,18 @@ public class CastExpr extends Expr{
 				map = (MapValue) value;
 				Map<String, Value<?>> map1 = map.value();
 				if(map1.size() == 0) {
-					bv = new BooleanValue(false);
+					bv = BooleanValue.of(false);
 					return bv;
 				}
 				else {
-					bv = new BooleanValue(true);
+					bv = BooleanValue.of(true);
 					return bv;
 				}
 			}
 			
 		}
 		else {
-			Utils.abort(super.getLine());
+			Utils.abort(line);
 		}
 
 		return null;
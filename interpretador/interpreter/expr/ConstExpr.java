@@ -1,5 +1,6 @@
 package interpreter.expr;
 
+import interpreter.ExecutionContext;
 import interpreter.value.Value;
 
 public class ConstExpr extends Expr {
@@ -11,8 +12,12 @@ public class ConstExpr extends Expr {
         this.value = value;
     }
 
+    public Value<?> getValue() {
+        return value;
+    }
+
     @Override
-    public Value<?> expr() {
+    public Value<?> expr(ExecutionContext ctx) {
         return value;
     }
     
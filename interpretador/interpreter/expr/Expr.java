@@ -1,5 +1,7 @@
 package interpreter.expr;
 
+import interpreter.ExecutionContext;
+import interpreter.value.NumberValue;
 import interpreter.value.Value;
 
 public abstract class Expr {
@@ -14,6 +16,22 @@ public abstract class Expr {
         return line;
     }
 
-    public abstract Value<?> expr();
+    public abstract Value<?> expr(ExecutionContext ctx);
+
+    // Evaluates the expression as an unboxed integer, throwing
+    // UnexpectedValueException with the computed value otherwise.
+    public int evalInt(ExecutionContext ctx) {
+        Value<?> v = expr(ctx);
+        if (v instanceof NumberValue)
+            return ((NumberValue) v).intValue();
+
+        throw new UnexpectedValueException(v);
+    }
+
+    // Evaluates the expression as a condition.
+    public boolean evalBool(ExecutionContext ctx) {
+        Value<?> v = expr(ctx);
+        return v != null && v.eval();
+    }
 
 }
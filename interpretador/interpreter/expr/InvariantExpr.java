@@ -0,0 +1,49 @@
+package interpreter.expr;
+
+import interpreter.ExecutionContext;
+import interpreter.value.ArrayValue;
+import interpreter.value.MapValue;
+import interpreter.value.Value;
+
+// An expression whose value cannot change while its loop runs, placed by
+// Hoister. It is evaluated the first time the loop reaches it and the
+// value is reused until the loop starts again, so an expression the loop
+// never reaches is never evaluated and one that aborts still aborts at
+// its own line. Arrays and maps are mutable, so those results are not
+// kept and every use gets a fresh one.
+public class InvariantExpr extends Expr {
+
+    private Expr expr;
+    private Value<?> value;
+    private boolean cached;
+
+    public InvariantExpr(Expr expr) {
+        super(expr.getLine());
+        this.expr = expr;
+    }
+
+    public Expr getExpr() {
+        return expr;
+    }
+
+    // Called by the loop each time it starts.
+    public void reset() {
+        value = null;
+        cached = false;
+    }
+
+    @Override
+    public Value<?> expr(ExecutionContext ctx) {
+        if (cached)
+            return value;
+
+        Value<?> v = expr.expr(ctx);
+        if (!(v instanceof ArrayValue) && !(v instanceof MapValue)) {
+            value = v;
+            cached = true;
+        }
+
+        return v;
+    }
+
+}
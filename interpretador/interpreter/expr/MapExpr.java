@@ -1,8 +1,8 @@
 package interpreter.expr;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import interpreter.ExecutionContext;
 import interpreter.value.MapValue;
 import interpreter.value.Value;
 
@@ -14,11 +14,15 @@ public class MapExpr extends Expr{
 		super(line);
 	}
 	
+	public List<MapItem> getItems() {
+		return array;
+	}
+
 	@Override
-	public Value<?> expr() {
-		Map<String, Value<?>> map = new HashMap<>();
+	public Value<?> expr(ExecutionContext ctx) {
+		Map<String, Value<?>> map = MapValue.newMap();
 		for(int i=0; i < array.size(); i++) {
-			map.put(array.get(i).Key, array.get(i).value.expr());
+			map.put(array.get(i).Key, array.get(i).value.expr(ctx));
 		}
 		MapValue v = new MapValue(map);
 		return v;
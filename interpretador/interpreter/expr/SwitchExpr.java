@@ -1,7 +1,11 @@
 package interpreter.expr;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import interpreter.ExecutionContext;
 import interpreter.value.TextValue;
 import interpreter.value.Value;
 
@@ -10,6 +14,10 @@ public class SwitchExpr extends Expr{
     private Expr expr;
     private List<CaseItem> cases = new ArrayList<CaseItem>();
     private Expr default_expr;
+    // Case indexes by key text, built on first use when every key is a
+    // constant. A key may be repeated, so each entry lists all its cases.
+    private Map<String, int[]> table;
+    private boolean indexed;
 
     public SwitchExpr(int line, Expr expr) {
         super(line);
@@ -24,32 +32,92 @@ public class SwitchExpr extends Expr{
         this.default_expr = default_expr;
     }
 
+    public Expr getExpr() {
+        return expr;
+    }
+
+    public void setExpr(Expr expr) {
+        this.expr = expr;
+    }
+
+    public List<CaseItem> getCases() {
+        return cases;
+    }
+
+    public Expr getDefault() {
+        return default_expr;
+    }
+
+    // Returns the jump table, or null when some key is not a constant.
+    public Map<String, int[]> getTable() {
+        if (!indexed) {
+            indexed = true;
+            Map<String, int[]> map = new HashMap<String, int[]>();
+            for (int i = 0; i < cases.size(); i++) {
+                Expr key = cases.get(i).key;
+                if (!(key instanceof ConstExpr))
+                    return null;
+
+                Value<?> k = ((ConstExpr) key).getValue();
+                String str = k != null ? k.toString() : "null";
+                int[] hits = map.get(str);
+                if (hits == null) {
+                    hits = new int[] { i };
+                } else {
+                    hits = Arrays.copyOf(hits, hits.length + 1);
+                    hits[hits.length - 1] = i;
+                }
+                map.put(str, hits);
+            }
+            table = map;
+        }
+
+        return table;
+    }
+
     @Override
-    public Value<?> expr() {
-        String v1 = expr.expr().toString();
+    public Value<?> expr(ExecutionContext ctx) {
+        Map<String, int[]> table = getTable();
+        if (table != null) {
+            // Every matching case is evaluated and the last one wins.
+            int[] hits = table.get(expr.expr(ctx).toString());
+            if (hits == null)
+                return otherwise(ctx);
+
+            Value<?> v = null;
+            for (int i : hits)
+                v = cases.get(i).value.expr(ctx);
+            return v;
+        }
+
+        String v1 = expr.expr(ctx).toString();
         String v2 = null;
         Value<?> v = null;
         boolean is_case = false;
         for(int i=0; i < cases.size(); i++) {
-        	if(cases.get(i).key.expr() != null){
-            		v2 =  cases.get(i).key.expr().toString();
+        	if(cases.get(i).key.expr(ctx) != null){
+            		v2 =  cases.get(i).key.expr(ctx).toString();
             }
-            else if(cases.get(i).key.expr() == null){
+            else if(cases.get(i).key.expr(ctx) == null){
             		v2 = "null";
             }
             	
             if(v1.equals(v2)) {
-                v = cases.get(i).value.expr();
+                v = cases.get(i).value.expr(ctx);
                 is_case = true;
             }
         }
         if(is_case == false) {
-        	if(default_expr == null) {
-        		TextValue t = new TextValue("null");
-        		return t;
-        	}
-        	return default_expr.expr();
+        	return otherwise(ctx);
         }
         return v;
     }
+
+    private Value<?> otherwise(ExecutionContext ctx) {
+    	if(default_expr == null) {
+    		TextValue t = new TextValue("null");
+    		return t;
+    	}
+    	return default_expr.expr(ctx);
+    }
 }
\ No newline at end of file
@@ -1,11 +1,9 @@
 package interpreter.expr;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.Set;
 
+import interpreter.ExecutionContext;
 import interpreter.util.Utils;
 import interpreter.value.ArrayValue;
 import interpreter.value.BooleanValue;
@@ -25,7 +23,6 @@ public class UnaryExpr extends Expr {
         KeysOp,
         ValuesOp;
     }
-    private static Scanner input = new Scanner(System.in);
 
     private Expr expr;
     private Op op;
@@ -37,147 +34,178 @@ public class UnaryExpr extends Expr {
         this.op = op;
     }
 
+    public Expr getExpr() {
+        return expr;
+    }
+
+    public void setExpr(Expr expr) {
+        this.expr = expr;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    @Override
+    public Value<?> expr(ExecutionContext ctx) {
+        if (op == Op.NegOp)
+            return NumberValue.of(evalInt(ctx));
+
+        Value<?> v = expr.expr(ctx);
+        return apply(ctx, super.getLine(), op, v);
+    }
+
     @Override
-    public Value<?> expr() {
+    public int evalInt(ExecutionContext ctx) {
+        if (op != Op.NegOp)
+            return super.evalInt(ctx);
+
+        try {
+            return -expr.evalInt(ctx);
+        } catch (UnexpectedValueException e) {
+            Value<?> v = apply(ctx, super.getLine(), op, e.getValue());
+            return ((NumberValue) v).intValue();
+        }
+    }
+
+    @Override
+    public boolean evalBool(ExecutionContext ctx) {
+        if (op == Op.NotOp)
+            return !expr.evalBool(ctx);
+
+        return super.evalBool(ctx);
+    }
+
+    public static Value<?> apply(ExecutionContext ctx, int line, Op op, Value<?> value) {
         Value<?> v = null;
         switch (op) {
             case NotOp:
-                v = notOp();
+                v = notOp(line, value);
                 break;
             case NegOp:
-                v = negOp();
+                v = negOp(line, value);
                 break;
             case ReadOp:
-                v = readOp();
+                v = readOp(ctx, line, value);
                 break;
             case EmptyOp:
-                v = emptyOp();
+                v = emptyOp(line, value);
                 break;
             case SizeOp:
-                v = sizeOp();
+                v = sizeOp(line, value);
                 break;
             case KeysOp:
-                v = keysOp();
+                v = keysOp(line, value);
                 break;
             case ValuesOp:
-                v = valuesOp();
+                v = valuesOp(line, value);
                 break;
             default:
-                Utils.abort(super.getLine());
+                Utils.abort(line);
         }
 
         return v;
     }
 
-    private Value<?> notOp() {
-        Value<?> v = expr.expr();
+    private static Value<?> notOp(int line, Value<?> v) {
         boolean b = v == null ? false : v.eval();
-        BooleanValue bv = new BooleanValue(!b);
+        BooleanValue bv = BooleanValue.of(!b);
         return bv;
     }
 
-    private Value<?> negOp() {
-        Value<?> v = expr.expr();
+    private static Value<?> negOp(int line, Value<?> v) {
         if (!(v instanceof NumberValue))
-            Utils.abort(super.getLine());
+            Utils.abort(line);
 
         NumberValue nv = (NumberValue) v;
-        int n = nv.value();
+        int n = nv.intValue();
 
-        NumberValue res = new NumberValue(-n);
+        NumberValue res = NumberValue.of(-n);
         return res;
     }
 
-    private Value<?> readOp() {
-        Value<?> v = expr.expr();
-        System.out.print(v == null ? "null" : v.toString());
+    private static Value<?> readOp(ExecutionContext ctx, int line, Value<?> v) {
+        ctx.getOutput().print(v == null ? "null" : v.toString());
+        ctx.getOutput().flush();
 
-        String line = input.nextLine();
-        TextValue tv = new TextValue(line);
+        String str = ctx.getInput().nextLine();
+        TextValue tv = new TextValue(str);
         return tv;
     }
 
-    private Value<?> emptyOp() {
-    	Value<?> v = expr.expr();
+    private static Value<?> emptyOp(int line, Value<?> v) {
     	BooleanValue res = null;
     	if(v instanceof ArrayValue) {
     		ArrayValue array = (ArrayValue) v;
     		if(array.value().size() == 0) {
-    			res = new BooleanValue(true);
+    			res = BooleanValue.of(true);
     		}
     		else {
-    			res = new BooleanValue(false);
+    			res = BooleanValue.of(false);
     		}
     	}
     	else if( v instanceof MapValue) {
     		MapValue map = (MapValue) v;
     		if(map.value().size() == 0) {
-    			res = new BooleanValue(true);
+    			res = BooleanValue.of(true);
     		}
     		else {
-    			res = new BooleanValue(false);
+    			res = BooleanValue.of(false);
     		}
     	}
     	else {
-    		Utils.abort(super.getLine());
+    		Utils.abort(line);
     	}
         return res;
     }
 
-    private Value<?> sizeOp() {
-    	Value<?> v = expr.expr();
+    private static Value<?> sizeOp(int line, Value<?> v) {
     	NumberValue res = null;
     	if(v instanceof ArrayValue) {
     		ArrayValue array = (ArrayValue) v;
-    		res = new NumberValue(array.value().size());
+    		res = NumberValue.of(array.value().size());
     	} else if(v instanceof MapValue) {
     		MapValue map = (MapValue) v;
-    		res = new NumberValue(map.value().size());
+    		res = NumberValue.of(map.value().size());
     	}
     	else {
-    		Utils.abort(super.getLine());
+    		Utils.abort(line);
     	}
         return res;
     }
 
-    private Value<?> keysOp() {
-    	Value<?> v = expr.expr();
+    private static Value<?> keysOp(int line, Value<?> v) {
     	ArrayValue res = null;
     	TextValue tv = null;
     	if(v instanceof MapValue) {
     		MapValue mapv = (MapValue) v; 
     		Map<String, Value<?>> map = mapv.value();
-    		Set<String> set1 = map.keySet();
-    		List<String> list = new ArrayList<String>(set1);
-    		List<Value<?>> list2 = new ArrayList<Value<?>>();
-    		for(int i=0; i < list.size(); i++) {
-    			tv = new TextValue(list.get(i));
+    		List<Value<?>> list2 = ArrayValue.newList();
+    		for(String key : map.keySet()) {
+    			tv = new TextValue(key);
     			list2.add(tv);
     		}
         	res = new ArrayValue(list2);
     	}
     	else {
-    		Utils.abort(super.getLine());
+    		Utils.abort(line);
     	}
         return res;
     }
 
-    private Value<?> valuesOp() {
-        Value<?> v = expr.expr();
+    private static Value<?> valuesOp(int line, Value<?> v) {
         ArrayValue res = null;
         if(v instanceof MapValue) {
             MapValue mapv = (MapValue) v; 
             Map<String, Value<?>> map = mapv.value();
-            Set<String> set1 = map.keySet();
-            List<String> list = new ArrayList<String>(set1);
-            List<Value<?>> list2 = new ArrayList<Value<?>>();
-            for(int i=0; i < list.size(); i++) {
-                list2.add(map.get(list.get(i)));
+            List<Value<?>> list2 = ArrayValue.newList();
+            for(Map.Entry<String, Value<?>> entry : map.entrySet()) {
+                list2.add(entry.getValue());
             }
             res = new ArrayValue(list2);
         }
         else {
-            Utils.abort(super.getLine());
+            Utils.abort(line);
         }
         return res;
     }
@@ -0,0 +1,23 @@
+package interpreter.expr;
+
+import interpreter.value.Value;
+
+// Thrown by Expr.evalInt() when the expression did not produce a number.
+// It carries the value that was computed, so the caller can finish the
+// operation generically without evaluating the expression again.
+public class UnexpectedValueException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private Value<?> value;
+
+    public UnexpectedValueException(Value<?> value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+
+    public Value<?> getValue() {
+        return value;
+    }
+
+}
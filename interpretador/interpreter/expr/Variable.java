@@ -1,30 +1,39 @@
 package interpreter.expr;
 
-import interpreter.util.Memory;
+import interpreter.ExecutionContext;
 import interpreter.value.Value;
 
 public class Variable extends SetExpr {
 
     private String name;
+    private int slot;
 
     public Variable(int line, String name) {
         super(line);
         this.name = name;
+        this.slot = -1;
     }
 
     public String getName() {
         return name;
     }
 
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     @Override
-    public Value<?> expr() {
-        Value<?> v = Memory.read(name);
-        return v;
+    public Value<?> expr(ExecutionContext ctx) {
+        return ctx.getMemory().read(slot);
     }
 
     @Override
-    public void setValue(Value<?> value) {
-        Memory.write(name, value);
+    public void setValue(ExecutionContext ctx, Value<?> value) {
+        ctx.getMemory().write(slot, value);
     }
     
 }
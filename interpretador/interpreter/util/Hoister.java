@@ -0,0 +1,240 @@
+package interpreter.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import interpreter.command.AssignCommand;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.DeclarationCommand;
+import interpreter.command.DeclarationType1Command;
+import interpreter.command.DeclarationType2Command;
+import interpreter.command.ForCommand;
+import interpreter.command.ForeachCommand;
+import interpreter.command.IfCommand;
+import interpreter.command.PrintCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.ArrayExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CaseItem;
+import interpreter.expr.CastExpr;
+import interpreter.expr.ConstExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.InvariantExpr;
+import interpreter.expr.MapExpr;
+import interpreter.expr.MapItem;
+import interpreter.expr.SwitchExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.expr.Variable;
+
+// Loop-invariant code motion for the tree-walker. In each while and for
+// loop, the largest expressions that only read variables the loop never
+// writes are wrapped in an InvariantExpr, which the loop evaluates once per
+// run instead of once per iteration. Only operators without side effects
+// qualify, so never read. Arrays and maps can be changed through any alias,
+// so a loop that assigns to an element keeps every expression that reads
+// a variable. Loops are visited outermost first, and an inner loop hoists
+// what is invariant in it but not in the loop around it.
+public class Hoister {
+
+    // Variables the loop being visited writes and whether it assigns to an
+    // element.
+    private Set<String> written;
+    private boolean mutates;
+    private List<InvariantExpr> found;
+
+    private Hoister() {
+        written = new HashSet<String>();
+        found = new ArrayList<InvariantExpr>();
+    }
+
+    public static void hoist(Command cmd) {
+        if (cmd == null)
+            return;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                hoist(c);
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            hoist(ic.getThenCommands());
+            hoist(ic.getElseCommands());
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            Hoister h = new Hoister();
+            h.scan(wc.getCommands());
+            wc.setExpr(h.rewrite(wc.getExpr()));
+            h.rewrite(wc.getCommands());
+            wc.setInvariants(h.found.toArray(new InvariantExpr[0]));
+            hoist(wc.getCommands());
+        } else if (cmd instanceof ForCommand) {
+            ForCommand fc = (ForCommand) cmd;
+            Hoister h = new Hoister();
+            h.scan(fc.getCommands());
+            h.scan(fc.getInc());
+            fc.setCond(h.rewrite(fc.getCond()));
+            h.rewrite(fc.getCommands());
+            h.rewrite(fc.getInc());
+            fc.setInvariants(h.found.toArray(new InvariantExpr[0]));
+            hoist(fc.getInit());
+            hoist(fc.getCommands());
+            hoist(fc.getInc());
+        } else if (cmd instanceof ForeachCommand) {
+            hoist(((ForeachCommand) cmd).getCommands());
+        }
+    }
+
+    // Records what the loop writes. Expressions never write.
+
+    private void scan(Command cmd) {
+        if (cmd == null)
+            return;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                scan(c);
+        } else if (cmd instanceof AssignCommand) {
+            AssignCommand ac = (AssignCommand) cmd;
+            if (ac.getLhs() instanceof Variable)
+                written.add(((Variable) ac.getLhs()).getName());
+            else
+                mutates = true;
+        } else if (cmd instanceof DeclarationType1Command) {
+            written.add(((DeclarationType1Command) cmd).getLhs().getName());
+        } else if (cmd instanceof DeclarationType2Command) {
+            for (Variable v : ((DeclarationType2Command) cmd).getLhs())
+                written.add(v.getName());
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            scan(ic.getThenCommands());
+            scan(ic.getElseCommands());
+        } else if (cmd instanceof WhileCommand) {
+            scan(((WhileCommand) cmd).getCommands());
+        } else if (cmd instanceof ForCommand) {
+            ForCommand fc = (ForCommand) cmd;
+            scan(fc.getInit());
+            scan(fc.getCommands());
+            scan(fc.getInc());
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            written.add(fc.getVar().getName());
+            scan(fc.getCommands());
+        }
+    }
+
+    // Wraps the largest invariant expressions in the loop.
+
+    private void rewrite(Command cmd) {
+        if (cmd == null)
+            return;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                rewrite(c);
+        } else if (cmd instanceof AssignCommand) {
+            AssignCommand ac = (AssignCommand) cmd;
+            ac.setRhs(rewrite(ac.getRhs()));
+        } else if (cmd instanceof DeclarationCommand) {
+            DeclarationCommand dc = (DeclarationCommand) cmd;
+            dc.setRhs(rewrite(dc.getRhs()));
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            ic.setExpr(rewrite(ic.getExpr()));
+            rewrite(ic.getThenCommands());
+            rewrite(ic.getElseCommands());
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            wc.setExpr(rewrite(wc.getExpr()));
+            rewrite(wc.getCommands());
+        } else if (cmd instanceof ForCommand) {
+            ForCommand fc = (ForCommand) cmd;
+            rewrite(fc.getInit());
+            fc.setCond(rewrite(fc.getCond()));
+            rewrite(fc.getCommands());
+            rewrite(fc.getInc());
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            fc.setExpr(rewrite(fc.getExpr()));
+            rewrite(fc.getCommands());
+        } else if (cmd instanceof PrintCommand) {
+            PrintCommand pc = (PrintCommand) cmd;
+            pc.setExpr(rewrite(pc.getExpr()));
+        }
+    }
+
+    // Returns the expression to use in place of expr.
+    private Expr rewrite(Expr expr) {
+        if (expr == null)
+            return null;
+
+        if (isInvariant(expr)) {
+            if (expr instanceof ConstExpr || expr instanceof Variable || expr instanceof InvariantExpr)
+                return expr;
+
+            InvariantExpr ie = new InvariantExpr(expr);
+            found.add(ie);
+            return ie;
+        }
+
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            be.setLeft(rewrite(be.getLeft()));
+            be.setRight(rewrite(be.getRight()));
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr ue = (UnaryExpr) expr;
+            ue.setExpr(rewrite(ue.getExpr()));
+        } else if (expr instanceof CastExpr) {
+            CastExpr ce = (CastExpr) expr;
+            ce.setExpr(rewrite(ce.getExpr()));
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            ae.setBase(rewrite(ae.getBase()));
+            ae.setIndex(rewrite(ae.getIndex()));
+        } else if (expr instanceof ArrayExpr) {
+            List<Expr> list = ((ArrayExpr) expr).getList();
+            for (int i = 0; i < list.size(); i++)
+                list.set(i, rewrite(list.get(i)));
+        } else if (expr instanceof MapExpr) {
+            for (MapItem item : ((MapExpr) expr).getItems())
+                item.value = rewrite(item.value);
+        } else if (expr instanceof SwitchExpr) {
+            SwitchExpr se = (SwitchExpr) expr;
+            se.setExpr(rewrite(se.getExpr()));
+            for (CaseItem item : se.getCases()) {
+                item.key = rewrite(item.key);
+                item.value = rewrite(item.value);
+            }
+            se.setDefault(rewrite(se.getDefault()));
+        }
+
+        return expr;
+    }
+
+    // Whether expr yields the same value, or the same error, every time
+    // the loop evaluates it. Array and map literals build a new container
+    // each time, so they are never invariant.
+    private boolean isInvariant(Expr expr) {
+        if (expr instanceof ConstExpr || expr instanceof InvariantExpr) {
+            return true;
+        } else if (expr instanceof Variable) {
+            return !mutates && !written.contains(((Variable) expr).getName());
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            return isInvariant(be.getLeft()) && isInvariant(be.getRight());
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr ue = (UnaryExpr) expr;
+            return ue.getOp() != UnaryExpr.Op.ReadOp && isInvariant(ue.getExpr());
+        } else if (expr instanceof CastExpr) {
+            return isInvariant(((CastExpr) expr).getExpr());
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            return isInvariant(ae.getBase()) && isInvariant(ae.getIndex());
+        }
+
+        return false;
+    }
+
+}
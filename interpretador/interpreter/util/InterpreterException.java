@@ -0,0 +1,21 @@
+package interpreter.util;
+
+// Base of the errors that end a script: a syntax error or an invalid
+// operation at run time. mgi prints them as "NN: message" and exits with
+// status 1; anything embedding the interpreter can catch them and go on.
+public class InterpreterException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private int line;
+
+    public InterpreterException(int line, String msg) {
+        super(msg);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+}
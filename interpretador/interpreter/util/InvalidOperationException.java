@@ -0,0 +1,13 @@
+package interpreter.util;
+
+// Thrown by Utils.abort when an operation is applied to values it is not
+// defined for.
+public class InvalidOperationException extends InterpreterException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidOperationException(int line, String msg) {
+        super(line, msg);
+    }
+
+}
@@ -1,20 +1,33 @@
 package interpreter.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import interpreter.value.Value;
 
+// The variables of one script, each at the frame slot the Resolver bound
+// it to. A tree is resolved before it runs, so there is no lookup by name.
 public class Memory {
 
-    private static Map<String, Value<?>> memory = new HashMap<String, Value<?>>();
+    private Value<?>[] frame;
 
-    public static Value<?> read(String name) {
-        return memory.get(name);
+    public Memory() {
+        frame = new Value<?>[16];
     }
 
-    public static void write(String name, Value<?> value) {
-        memory.put(name, value);
+    public Value<?> read(int slot) {
+        return frame[slot];
+    }
+
+    public void write(int slot, Value<?> value) {
+        frame[slot] = value;
+    }
+
+    // Returns the frame, grown to hold at least size entries.
+    public Value<?>[] frame(int size) {
+        if (frame.length < size)
+            frame = Arrays.copyOf(frame, Math.max(frame.length * 2, size));
+
+        return frame;
     }
 
 }
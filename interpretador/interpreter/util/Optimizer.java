@@ -0,0 +1,249 @@
+package interpreter.util;
+
+import java.util.List;
+
+import interpreter.command.AssignCommand;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.DeclarationCommand;
+import interpreter.command.ForCommand;
+import interpreter.command.ForeachCommand;
+import interpreter.command.IfCommand;
+import interpreter.command.PrintCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.ArrayExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CaseItem;
+import interpreter.expr.CastExpr;
+import interpreter.expr.ConstExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.MapExpr;
+import interpreter.expr.MapItem;
+import interpreter.expr.SwitchExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.value.BooleanValue;
+import interpreter.value.NumberValue;
+import interpreter.value.TextValue;
+import interpreter.value.Value;
+
+// Folds operations on constants into a ConstExpr and drops arithmetic
+// identities such as x + 0 and x * 1. Only operations that cannot fail are
+// rewritten, so every invalid operation is left in place and still aborts
+// at run time with its own line.
+public class Optimizer {
+
+    private Optimizer() {
+    }
+
+    public static void optimize(Command cmd) {
+        if (cmd == null)
+            return;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                optimize(c);
+        } else if (cmd instanceof AssignCommand) {
+            AssignCommand ac = (AssignCommand) cmd;
+            optimize(ac.getLhs());
+            ac.setRhs(optimize(ac.getRhs()));
+        } else if (cmd instanceof DeclarationCommand) {
+            DeclarationCommand dc = (DeclarationCommand) cmd;
+            dc.setRhs(optimize(dc.getRhs()));
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            ic.setExpr(optimize(ic.getExpr()));
+            optimize(ic.getThenCommands());
+            optimize(ic.getElseCommands());
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            wc.setExpr(optimize(wc.getExpr()));
+            optimize(wc.getCommands());
+        } else if (cmd instanceof ForCommand) {
+            ForCommand fc = (ForCommand) cmd;
+            optimize(fc.getInit());
+            fc.setCond(optimize(fc.getCond()));
+            optimize(fc.getInc());
+            optimize(fc.getCommands());
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            fc.setExpr(optimize(fc.getExpr()));
+            optimize(fc.getCommands());
+        } else if (cmd instanceof PrintCommand) {
+            PrintCommand pc = (PrintCommand) cmd;
+            pc.setExpr(optimize(pc.getExpr()));
+        }
+    }
+
+    // Returns the expression to use in place of expr.
+    public static Expr optimize(Expr expr) {
+        if (expr == null)
+            return null;
+
+        if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            be.setLeft(optimize(be.getLeft()));
+            be.setRight(optimize(be.getRight()));
+            if (isConst(be.getLeft()) && isConst(be.getRight()) &&
+                    canFold(be.getOp(), value(be.getLeft()), value(be.getRight())))
+                return new ConstExpr(be.getLine(),
+                    BinaryExpr.apply(be.getLine(), be.getOp(), value(be.getLeft()), value(be.getRight())));
+
+            return simplify(be);
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr ue = (UnaryExpr) expr;
+            ue.setExpr(optimize(ue.getExpr()));
+            // Neither foldable operator reads the execution context.
+            if (isConst(ue.getExpr()) && canFold(ue.getOp(), value(ue.getExpr())))
+                return new ConstExpr(ue.getLine(),
+                    UnaryExpr.apply(null, ue.getLine(), ue.getOp(), value(ue.getExpr())));
+        } else if (expr instanceof CastExpr) {
+            // Every cast of a constant is defined.
+            CastExpr ce = (CastExpr) expr;
+            ce.setExpr(optimize(ce.getExpr()));
+            if (isConst(ce.getExpr()))
+                return new ConstExpr(ce.getLine(),
+                    CastExpr.apply(ce.getLine(), ce.getOp(), value(ce.getExpr())));
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            ae.setBase(optimize(ae.getBase()));
+            ae.setIndex(optimize(ae.getIndex()));
+        } else if (expr instanceof ArrayExpr) {
+            List<Expr> list = ((ArrayExpr) expr).getList();
+            for (int i = 0; i < list.size(); i++)
+                list.set(i, optimize(list.get(i)));
+        } else if (expr instanceof MapExpr) {
+            for (MapItem item : ((MapExpr) expr).getItems())
+                item.value = optimize(item.value);
+        } else if (expr instanceof SwitchExpr) {
+            SwitchExpr se = (SwitchExpr) expr;
+            se.setExpr(optimize(se.getExpr()));
+            for (CaseItem item : se.getCases()) {
+                item.key = optimize(item.key);
+                item.value = optimize(item.value);
+            }
+            se.setDefault(optimize(se.getDefault()));
+        }
+
+        return expr;
+    }
+
+    private static boolean canFold(BinaryExpr.Op op, Value<?> l, Value<?> r) {
+        boolean numbers = l instanceof NumberValue && r instanceof NumberValue;
+        switch (op) {
+            case AndOp:
+            case OrOp:
+                // Eager and short-circuit evaluation disagree on other
+                // operands, such as null || true.
+                return l instanceof BooleanValue && r instanceof BooleanValue;
+            case EqualOp:
+            case NotEqualOp:
+                return numbers || (l instanceof TextValue && r instanceof TextValue);
+            case LowerThanOp:
+            case LowerEqualOp:
+            case GreaterThanOp:
+            case GreaterEqualOp:
+            case SubOp:
+            case MulOp:
+            case PowerOp:
+                return numbers;
+            case AddOp:
+                return (l instanceof NumberValue || l instanceof TextValue) &&
+                       (r instanceof NumberValue || r instanceof TextValue);
+            case DivOp:
+            case ModOp:
+                return numbers && ((NumberValue) r).intValue() != 0;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean canFold(UnaryExpr.Op op, Value<?> v) {
+        switch (op) {
+            case NotOp:
+                return true;
+            case NegOp:
+                return v instanceof NumberValue;
+            default:
+                return false;
+        }
+    }
+
+    // x + 0, 0 + x, x - 0, x * 1, 1 * x, x / 1 and x ** 1 become x when x
+    // always yields a number, so dropping the operation changes nothing.
+    private static Expr simplify(BinaryExpr be) {
+        Expr l = be.getLeft();
+        Expr r = be.getRight();
+        switch (be.getOp()) {
+            case AddOp:
+                if (isNumber(r, 0) && isNumeric(l))
+                    return l;
+                if (isNumber(l, 0) && isNumeric(r))
+                    return r;
+                break;
+            case MulOp:
+                if (isNumber(r, 1) && isNumeric(l))
+                    return l;
+                if (isNumber(l, 1) && isNumeric(r))
+                    return r;
+                break;
+            case SubOp:
+                if (isNumber(r, 0) && isNumeric(l))
+                    return l;
+                break;
+            case DivOp:
+            case PowerOp:
+                if (isNumber(r, 1) && isNumeric(l))
+                    return l;
+                break;
+            default:
+                break;
+        }
+
+        return be;
+    }
+
+    // Whether expr evaluates to a NumberValue whenever it does not abort.
+    private static boolean isNumeric(Expr expr) {
+        if (expr instanceof ConstExpr) {
+            return value(expr) instanceof NumberValue;
+        } else if (expr instanceof BinaryExpr) {
+            switch (((BinaryExpr) expr).getOp()) {
+                case SubOp:
+                case MulOp:
+                case DivOp:
+                case ModOp:
+                case PowerOp:
+                    return true;
+                default:
+                    return false;
+            }
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr.Op op = ((UnaryExpr) expr).getOp();
+            return op == UnaryExpr.Op.NegOp || op == UnaryExpr.Op.SizeOp;
+        } else if (expr instanceof CastExpr) {
+            return ((CastExpr) expr).getOp() == CastExpr.CastOp.IntegerOp;
+        }
+
+        return false;
+    }
+
+    private static boolean isNumber(Expr expr, int n) {
+        Value<?> v = isConst(expr) ? value(expr) : null;
+        return v instanceof NumberValue && ((NumberValue) v).intValue() == n;
+    }
+
+    private static boolean isConst(Expr expr) {
+        if (!(expr instanceof ConstExpr))
+            return false;
+
+        Value<?> v = value(expr);
+        return v == null || v instanceof NumberValue ||
+               v instanceof TextValue || v instanceof BooleanValue;
+    }
+
+    private static Value<?> value(Expr expr) {
+        return ((ConstExpr) expr).getValue();
+    }
+
+}
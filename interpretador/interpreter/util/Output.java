@@ -0,0 +1,51 @@
+package interpreter.util;
+
+import java.io.PrintStream;
+
+// Buffered output for one script. A PrintStream such as System.out flushes
+// on every newline, so a script printing many lines would pay a write per
+// line; here text collects in an unsynchronized buffer and reaches the
+// stream in chunks. flush() must run before anything else is shown to the
+// user: at exit, before a read() prompt waits for input and before an
+// error message.
+public class Output {
+
+    private static final int SIZE = 1 << 16;
+    private static final String NEWLINE = System.lineSeparator();
+
+    private final PrintStream out;
+    private final StringBuilder buffer;
+
+    public Output(PrintStream out) {
+        this.out = out;
+        this.buffer = new StringBuilder(SIZE);
+    }
+
+    public void print(String str) {
+        if (str.length() >= SIZE) {
+            flush();
+            out.print(str);
+            return;
+        }
+
+        buffer.append(str);
+        if (buffer.length() >= SIZE)
+            flush();
+    }
+
+    public void println() {
+        buffer.append(NEWLINE);
+        if (buffer.length() >= SIZE)
+            flush();
+    }
+
+    public void flush() {
+        if (buffer.length() > 0) {
+            out.print(buffer.toString());
+            buffer.setLength(0);
+        }
+
+        out.flush();
+    }
+
+}
@@ -0,0 +1,67 @@
+package interpreter.util;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+// Directories that only this user can write, for files another local user
+// must not plant or replace, such as cache entries in the shared temporary
+// directory. Where the file system has no POSIX permissions only the owner
+// is checked.
+public class PrivateDirectory {
+
+    private static final boolean POSIX =
+        FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private PrivateDirectory() {
+    }
+
+    // Creates dir, and any missing parents, as rwx------ if it does not
+    // exist, then checks it as isPrivate does.
+    public static boolean create(Path dir) {
+        try {
+            if (Files.notExists(dir, LinkOption.NOFOLLOW_LINKS)) {
+                if (POSIX)
+                    Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+                else
+                    Files.createDirectories(dir);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        return isPrivate(dir);
+    }
+
+    // Whether dir is a directory, not a link to one, that this user owns
+    // and that no one else can write.
+    public static boolean isPrivate(Path dir) {
+        try {
+            if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+                return false;
+
+            UserPrincipal me = dir.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!POSIX)
+                return me.equals(Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS));
+
+            PosixFileAttributes attrs = Files.readAttributes(dir, PosixFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+            Set<PosixFilePermission> perms = attrs.permissions();
+            return me.equals(attrs.owner())
+                && !perms.contains(PosixFilePermission.GROUP_WRITE)
+                && !perms.contains(PosixFilePermission.OTHERS_WRITE);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package interpreter.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import interpreter.command.AssignCommand;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.DeclarationType1Command;
+import interpreter.command.DeclarationType2Command;
+import interpreter.command.ForCommand;
+import interpreter.command.ForeachCommand;
+import interpreter.command.IfCommand;
+import interpreter.command.PrintCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.ArrayExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CaseItem;
+import interpreter.expr.CastExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.MapExpr;
+import interpreter.expr.MapItem;
+import interpreter.expr.SwitchExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.expr.Variable;
+
+// Binds every Variable in a tree to a Memory slot, so reads and writes
+// index the frame instead of hashing the name. Each name gets one slot.
+public class Resolver {
+
+    private Map<String, Integer> slots;
+
+    private Resolver() {
+        slots = new HashMap<String, Integer>();
+    }
+
+    // Returns the number of slots used, which the frame must hold.
+    public static int resolve(Command cmd) {
+        Resolver r = new Resolver();
+        r.bind(cmd);
+        return r.slots.size();
+    }
+
+    private void bind(Command cmd) {
+        if (cmd == null)
+            return;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                bind(c);
+        } else if (cmd instanceof AssignCommand) {
+            AssignCommand ac = (AssignCommand) cmd;
+            bind(ac.getLhs());
+            bind(ac.getRhs());
+        } else if (cmd instanceof DeclarationType1Command) {
+            DeclarationType1Command dc = (DeclarationType1Command) cmd;
+            bind(dc.getLhs());
+            bind(dc.getRhs());
+        } else if (cmd instanceof DeclarationType2Command) {
+            DeclarationType2Command dc = (DeclarationType2Command) cmd;
+            for (Variable var : dc.getLhs())
+                bind(var);
+            bind(dc.getRhs());
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            bind(ic.getExpr());
+            bind(ic.getThenCommands());
+            bind(ic.getElseCommands());
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            bind(wc.getExpr());
+            bind(wc.getCommands());
+        } else if (cmd instanceof ForCommand) {
+            ForCommand fc = (ForCommand) cmd;
+            bind(fc.getInit());
+            bind(fc.getCond());
+            bind(fc.getInc());
+            bind(fc.getCommands());
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            bind(fc.getVar());
+            bind(fc.getExpr());
+            bind(fc.getCommands());
+        } else if (cmd instanceof PrintCommand) {
+            bind(((PrintCommand) cmd).getExpr());
+        }
+    }
+
+    private void bind(Expr expr) {
+        if (expr == null)
+            return;
+
+        if (expr instanceof Variable) {
+            Variable var = (Variable) expr;
+            Integer slot = slots.get(var.getName());
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(var.getName(), slot);
+            }
+            var.setSlot(slot);
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            bind(be.getLeft());
+            bind(be.getRight());
+        } else if (expr instanceof UnaryExpr) {
+            bind(((UnaryExpr) expr).getExpr());
+        } else if (expr instanceof CastExpr) {
+            bind(((CastExpr) expr).getExpr());
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            bind(ae.getBase());
+            bind(ae.getIndex());
+        } else if (expr instanceof ArrayExpr) {
+            for (Expr e : ((ArrayExpr) expr).getList())
+                bind(e);
+        } else if (expr instanceof MapExpr) {
+            for (MapItem item : ((MapExpr) expr).getItems())
+                bind(item.value);
+        } else if (expr instanceof SwitchExpr) {
+            SwitchExpr se = (SwitchExpr) expr;
+            bind(se.getExpr());
+            for (CaseItem item : se.getCases()) {
+                bind(item.key);
+                bind(item.value);
+            }
+            bind(se.getDefault());
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package interpreter.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import interpreter.command.Command;
+
+// Optimized syntax trees encoded by TreeCodec, keyed by the SHA-256 of the
+// source bytes. Recent entries are kept in memory, which serves the server
+// and batch runner; every entry is also a file in a directory, which
+// serves separate mgi runs. Only bytes are cached, so each get decodes a
+// fresh tree and concurrent runs never share nodes. Failures to read or
+// write the directory just count as misses, and so does a directory that
+// someone else could write, since its entries may not be ours.
+public class ScriptCache {
+
+    private static final int MEMORY_ENTRIES = 256;
+    private static ScriptCache shared;
+
+    private Path dir;
+    private Map<String, byte[]> memory;
+
+    public ScriptCache(Path dir) {
+        this.dir = dir;
+        this.memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > MEMORY_ENTRIES;
+            }
+        };
+    }
+
+    // The cache in -Dmgi.cache, or mgi-<user>-cache in the temporary
+    // directory. Either is created readable only by this user.
+    public static synchronized ScriptCache shared() {
+        if (shared == null) {
+            String dir = System.getProperty("mgi.cache", System.getProperty("java.io.tmpdir") +
+                "/mgi-" + System.getProperty("user.name") + "-cache");
+            shared = new ScriptCache(Path.of(dir));
+        }
+
+        return shared;
+    }
+
+    public static String key(byte[] source) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(source);
+            StringBuilder sb = new StringBuilder(2 * hash.length);
+            for (byte b : hash)
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Returns a new copy of the tree cached under key, or null.
+    public Command get(String key) {
+        byte[] data;
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+
+        if (data == null) {
+            if (!PrivateDirectory.isPrivate(dir))
+                return null;
+            try {
+                data = Files.readAllBytes(file(key));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        try {
+            Command cmd = TreeCodec.decode(data);
+            synchronized (memory) {
+                memory.put(key, data);
+            }
+            return cmd;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Caches cmd under key. Call it before Resolver or any run, so the
+    // encoded tree is exactly what the parser and Optimizer produced.
+    public void put(String key, Command cmd) {
+        byte[] data = TreeCodec.encode(cmd);
+        synchronized (memory) {
+            memory.put(key, data);
+        }
+
+        if (!PrivateDirectory.create(dir))
+            return;
+
+        // Written under a temporary name and moved into place, so readers
+        // never see a partial file.
+        try {
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, file(key), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // Left for the next run to write.
+        }
+    }
+
+    private Path file(String key) {
+        return dir.resolve(key + ".ast");
+    }
+
+}
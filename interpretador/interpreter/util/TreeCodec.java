@@ -0,0 +1,463 @@
+package interpreter.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.command.AssignCommand;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.DeclarationType1Command;
+import interpreter.command.DeclarationType2Command;
+import interpreter.command.ForCommand;
+import interpreter.command.ForeachCommand;
+import interpreter.command.IfCommand;
+import interpreter.command.PrintCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.ArrayExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CaseItem;
+import interpreter.expr.CastExpr;
+import interpreter.expr.ConstExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.MapExpr;
+import interpreter.expr.MapItem;
+import interpreter.expr.SetExpr;
+import interpreter.expr.SwitchExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.expr.Variable;
+import interpreter.value.BooleanValue;
+import interpreter.value.NumberValue;
+import interpreter.value.TextValue;
+import interpreter.value.Value;
+
+// Writes a syntax tree as bytes and reads it back. Each node is a tag
+// followed by its line, as a difference from the previous node's, and its
+// children in constructor order. Ints are variable-length, a string is
+// written once and then referred to by index, and operators are written by
+// ordinal, so VERSION must be bumped whenever a node or an operator enum
+// changes. Variable slots are not written: Resolver runs again on every
+// decoded tree.
+public class TreeCodec {
+
+    private static final int MAGIC = 0x4D475431; // "MGT1"
+    private static final int VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int BLOCKS = 1;
+    private static final int ASSIGN = 2;
+    private static final int DECL1 = 3;
+    private static final int DECL2 = 4;
+    private static final int FOR = 5;
+    private static final int FOREACH = 6;
+    private static final int IF = 7;
+    private static final int PRINT = 8;
+    private static final int WHILE = 9;
+    private static final int ACCESS = 20;
+    private static final int ARRAY = 21;
+    private static final int BINARY = 22;
+    private static final int CAST = 23;
+    private static final int CONST = 24;
+    private static final int MAP = 25;
+    private static final int SWITCH = 26;
+    private static final int UNARY = 27;
+    private static final int VARIABLE = 28;
+
+    // Tags for constant values.
+    private static final int NUMBER = 1;
+    private static final int TEXT = 2;
+    private static final int FALSE = 3;
+    private static final int TRUE = 4;
+
+    // Encoding appends to out and numbers strings in ids; decoding reads
+    // data from pos and keeps the strings seen so far in strings.
+    private ByteArrayOutputStream out;
+    private Map<String, Integer> ids;
+    private byte[] data;
+    private int pos;
+    private List<String> strings;
+    private int line;
+
+    private TreeCodec() {
+    }
+
+    public static byte[] encode(Command cmd) {
+        TreeCodec codec = new TreeCodec();
+        codec.out = new ByteArrayOutputStream();
+        codec.ids = new HashMap<String, Integer>();
+        try {
+            codec.writeInt(MAGIC);
+            codec.writeInt(VERSION);
+            codec.write(cmd);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return codec.out.toByteArray();
+    }
+
+    // Throws IOException when data was not written by this version of
+    // encode.
+    public static Command decode(byte[] data) throws IOException {
+        TreeCodec codec = new TreeCodec();
+        codec.data = data;
+        codec.strings = new ArrayList<String>();
+        try {
+            if (codec.readInt() != MAGIC || codec.readInt() != VERSION)
+                throw new IOException("Unknown tree format");
+
+            Command cmd = codec.readCommand();
+            if (codec.pos != data.length)
+                throw new IOException("Trailing bytes after tree");
+
+            return cmd;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed tree", e);
+        }
+    }
+
+    private void write(Command cmd) throws IOException {
+        if (cmd == null) {
+            writeInt(NULL);
+        } else if (cmd instanceof BlocksCommand) {
+            List<Command> cmds = ((BlocksCommand) cmd).getCommands();
+            header(BLOCKS, cmd.getLine());
+            writeInt(cmds.size());
+            for (Command c : cmds)
+                write(c);
+        } else if (cmd instanceof AssignCommand) {
+            AssignCommand ac = (AssignCommand) cmd;
+            header(ASSIGN, cmd.getLine());
+            write(ac.getLhs());
+            writeInt(ac.getOp().ordinal());
+            write(ac.getRhs());
+        } else if (cmd instanceof DeclarationType1Command) {
+            DeclarationType1Command dc = (DeclarationType1Command) cmd;
+            header(DECL1, cmd.getLine());
+            write(dc.getLhs());
+            write(dc.getRhs());
+        } else if (cmd instanceof DeclarationType2Command) {
+            DeclarationType2Command dc = (DeclarationType2Command) cmd;
+            header(DECL2, cmd.getLine());
+            writeInt(dc.getLhs().size());
+            for (Variable v : dc.getLhs())
+                write(v);
+            write(dc.getRhs());
+        } else if (cmd instanceof ForCommand) {
+            ForCommand fc = (ForCommand) cmd;
+            header(FOR, cmd.getLine());
+            write(fc.getCommands());
+            write(fc.getCond());
+            write(fc.getInit());
+            write(fc.getInc());
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            header(FOREACH, cmd.getLine());
+            write(fc.getVar());
+            write(fc.getExpr());
+            write(fc.getCommands());
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            header(IF, cmd.getLine());
+            write(ic.getExpr());
+            write(ic.getThenCommands());
+            write(ic.getElseCommands());
+        } else if (cmd instanceof PrintCommand) {
+            PrintCommand pc = (PrintCommand) cmd;
+            header(PRINT, cmd.getLine());
+            writeInt(pc.isNewline() ? 1 : 0);
+            write(pc.getExpr());
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            header(WHILE, cmd.getLine());
+            write(wc.getExpr());
+            write(wc.getCommands());
+        } else {
+            throw new IllegalArgumentException("Unknown command " + cmd.getClass().getName());
+        }
+    }
+
+    private void write(Expr expr) throws IOException {
+        if (expr == null) {
+            writeInt(NULL);
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            header(ACCESS, expr.getLine());
+            write(ae.getBase());
+            write(ae.getIndex());
+        } else if (expr instanceof ArrayExpr) {
+            List<Expr> list = ((ArrayExpr) expr).getList();
+            header(ARRAY, expr.getLine());
+            writeInt(list.size());
+            for (Expr e : list)
+                write(e);
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            header(BINARY, expr.getLine());
+            write(be.getLeft());
+            writeInt(be.getOp().ordinal());
+            write(be.getRight());
+        } else if (expr instanceof CastExpr) {
+            CastExpr ce = (CastExpr) expr;
+            header(CAST, expr.getLine());
+            write(ce.getExpr());
+            writeInt(ce.getOp().ordinal());
+        } else if (expr instanceof ConstExpr) {
+            header(CONST, expr.getLine());
+            write(((ConstExpr) expr).getValue());
+        } else if (expr instanceof MapExpr) {
+            List<MapItem> items = ((MapExpr) expr).getItems();
+            header(MAP, expr.getLine());
+            writeInt(items.size());
+            for (MapItem item : items) {
+                writeString(item.Key);
+                write(item.value);
+            }
+        } else if (expr instanceof SwitchExpr) {
+            SwitchExpr se = (SwitchExpr) expr;
+            header(SWITCH, expr.getLine());
+            write(se.getExpr());
+            writeInt(se.getCases().size());
+            for (CaseItem item : se.getCases()) {
+                write(item.key);
+                write(item.value);
+            }
+            write(se.getDefault());
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr ue = (UnaryExpr) expr;
+            header(UNARY, expr.getLine());
+            write(ue.getExpr());
+            writeInt(ue.getOp().ordinal());
+        } else if (expr instanceof Variable) {
+            header(VARIABLE, expr.getLine());
+            writeString(((Variable) expr).getName());
+        } else {
+            throw new IllegalArgumentException("Unknown expression " + expr.getClass().getName());
+        }
+    }
+
+    private void write(Value<?> value) throws IOException {
+        if (value == null) {
+            writeInt(NULL);
+        } else if (value instanceof NumberValue) {
+            writeInt(NUMBER);
+            writeInt(((NumberValue) value).intValue());
+        } else if (value instanceof TextValue) {
+            writeInt(TEXT);
+            writeString(((TextValue) value).value());
+        } else if (value instanceof BooleanValue) {
+            writeInt(value.eval() ? TRUE : FALSE);
+        } else {
+            throw new IllegalArgumentException("Unknown constant " + value.getClass().getName());
+        }
+    }
+
+    private Command readCommand() throws IOException {
+        int tag = readInt();
+        if (tag == NULL)
+            return null;
+
+        int line = readLine();
+        switch (tag) {
+            case BLOCKS: {
+                int n = readInt();
+                List<Command> cmds = new ArrayList<Command>(n);
+                for (int i = 0; i < n; i++)
+                    cmds.add(readCommand());
+                return new BlocksCommand(line, cmds);
+            }
+            case ASSIGN: {
+                SetExpr lhs = (SetExpr) readExpr();
+                AssignCommand.Op op = AssignCommand.Op.values()[readInt()];
+                return new AssignCommand(line, lhs, op, readExpr());
+            }
+            case DECL1: {
+                Variable lhs = (Variable) readExpr();
+                return new DeclarationType1Command(line, lhs, readExpr());
+            }
+            case DECL2: {
+                int n = readInt();
+                List<Variable> lhs = new ArrayList<Variable>(n);
+                for (int i = 0; i < n; i++)
+                    lhs.add((Variable) readExpr());
+                return new DeclarationType2Command(line, lhs, readExpr());
+            }
+            case FOR: {
+                Command cmds = readCommand();
+                Expr cond = readExpr();
+                Command init = readCommand();
+                return new ForCommand(line, cmds, cond, init, readCommand());
+            }
+            case FOREACH: {
+                Variable var = (Variable) readExpr();
+                Expr expr = readExpr();
+                return new ForeachCommand(line, var, expr, readCommand());
+            }
+            case IF: {
+                Expr expr = readExpr();
+                IfCommand ic = new IfCommand(line, expr, readCommand());
+                ic.setElseCommands(readCommand());
+                return ic;
+            }
+            case PRINT: {
+                boolean newline = readInt() != 0;
+                return new PrintCommand(line, newline, readExpr());
+            }
+            case WHILE: {
+                Expr expr = readExpr();
+                return new WhileCommand(line, expr, readCommand());
+            }
+            default:
+                throw new IOException("Unknown command tag " + tag);
+        }
+    }
+
+    private Expr readExpr() throws IOException {
+        int tag = readInt();
+        if (tag == NULL)
+            return null;
+
+        int line = readLine();
+        switch (tag) {
+            case ACCESS: {
+                Expr base = readExpr();
+                return new AccessExpr(line, base, readExpr());
+            }
+            case ARRAY: {
+                int n = readInt();
+                List<Expr> list = new ArrayList<Expr>(n);
+                for (int i = 0; i < n; i++)
+                    list.add(readExpr());
+                return new ArrayExpr(line, list);
+            }
+            case BINARY: {
+                Expr left = readExpr();
+                BinaryExpr.Op op = BinaryExpr.Op.values()[readInt()];
+                return new BinaryExpr(line, left, op, readExpr());
+            }
+            case CAST: {
+                Expr expr = readExpr();
+                return new CastExpr(line, expr, CastExpr.CastOp.values()[readInt()]);
+            }
+            case CONST:
+                return new ConstExpr(line, readValue());
+            case MAP: {
+                MapExpr map = new MapExpr(line);
+                int n = readInt();
+                for (int i = 0; i < n; i++) {
+                    MapItem item = new MapItem();
+                    item.Key = readString();
+                    item.value = readExpr();
+                    map.addItem(item);
+                }
+                return map;
+            }
+            case SWITCH: {
+                SwitchExpr se = new SwitchExpr(line, readExpr());
+                int n = readInt();
+                for (int i = 0; i < n; i++) {
+                    CaseItem item = new CaseItem();
+                    item.key = readExpr();
+                    item.value = readExpr();
+                    se.addCase(item);
+                }
+                se.setDefault(readExpr());
+                return se;
+            }
+            case UNARY: {
+                Expr expr = readExpr();
+                return new UnaryExpr(line, expr, UnaryExpr.Op.values()[readInt()]);
+            }
+            case VARIABLE:
+                return new Variable(line, readString());
+            default:
+                throw new IOException("Unknown expression tag " + tag);
+        }
+    }
+
+    private Value<?> readValue() throws IOException {
+        int tag = readInt();
+        switch (tag) {
+            case NULL:
+                return null;
+            case NUMBER:
+                return NumberValue.of(readInt());
+            case TEXT:
+                return new TextValue(readString());
+            case FALSE:
+                return BooleanValue.FALSE;
+            case TRUE:
+                return BooleanValue.TRUE;
+            default:
+                throw new IOException("Unknown constant tag " + tag);
+        }
+    }
+
+    private void header(int tag, int line) throws IOException {
+        writeInt(tag);
+        writeInt(line - this.line);
+        this.line = line;
+    }
+
+    private int readLine() throws IOException {
+        line += readInt();
+        return line;
+    }
+
+    // Zigzag varint: small values of either sign take one byte.
+    private void writeInt(int v) throws IOException {
+        int n = (v << 1) ^ (v >> 31);
+        while ((n & ~0x7F) != 0) {
+            out.write((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.write(n);
+    }
+
+    private int readInt() throws IOException {
+        int n = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = data[pos++];
+            n |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (n >>> 1) ^ -(n & 1);
+        }
+
+        throw new IOException("Malformed varint");
+    }
+
+    // The id of a string seen before, or the next id and its UTF-8 bytes.
+    private void writeString(String s) throws IOException {
+        Integer id = ids.get(s);
+        if (id != null) {
+            writeInt(id);
+            return;
+        }
+
+        ids.put(s, ids.size());
+        writeInt(ids.size() - 1);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString() throws IOException {
+        int id = readInt();
+        if (id < strings.size())
+            return strings.get(id);
+        if (id != strings.size())
+            throw new IOException("Unknown string " + id);
+
+        int length = readInt();
+        String s = new String(data, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        strings.add(s);
+        return s;
+    }
+
+}
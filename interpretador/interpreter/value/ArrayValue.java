@@ -1,20 +1,176 @@
 package interpreter.value;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class ArrayValue extends Value<List<Value<?>>> {
 
+    // Arrays are backed by IntList, which keeps numbers unboxed. Run with
+    // -Dinterpreter.value.persistent=true to back them with PersistentVector
+    // instead, so copies share structure instead of elements.
+    private static final boolean PERSISTENT = Boolean.getBoolean("interpreter.value.persistent");
+
+    // Arrays shorter than this are searched linearly.
+    private static final int INDEX_THRESHOLD = 16;
+
     private List<Value<?>> value;
+    // Number and text elements, built by contains() and dropped when an
+    // element is replaced. Mutate through set() and add() to keep it valid.
+    private Set<Value<?>> index;
+    // The same for an IntList of numbers, without boxing them.
+    private IntSet intIndex;
+    private int indexed;
 
     public ArrayValue(List<Value<?>> value) {
         this.value = value;
     }
 
+    public static List<Value<?>> newList() {
+        return PERSISTENT ? new PersistentVector() : new IntList();
+    }
+
+    public static List<Value<?>> copyOf(List<Value<?>> list) {
+        if (list instanceof PersistentVector)
+            return ((PersistentVector) list).copy();
+        if (list instanceof IntList)
+            return ((IntList) list).copy();
+
+        List<Value<?>> copy = newList();
+        copy.addAll(list);
+        return copy;
+    }
+
     @Override
     public List<Value<?>> value() {
         return this.value;
     }
     
+    public void set(int i, Value<?> v) {
+        value.set(i, v);
+        index = null;
+        intIndex = null;
+    }
+
+    public void add(Value<?> v) {
+        value.add(v);
+        if (value.size() != indexed + 1)
+            return;
+
+        if (index != null) {
+            if (v instanceof NumberValue || v instanceof TextValue)
+                index.add(v);
+            indexed++;
+        } else if (intIndex != null) {
+            if (v instanceof NumberValue) {
+                intIndex.add(((NumberValue) v).intValue());
+                indexed++;
+            } else {
+                intIndex = null;
+            }
+        }
+    }
+
+    // Whether some element equals v, as v.equals(element) decides. Only
+    // numbers and texts equal a number or a text, so those are all the
+    // index holds.
+    public boolean contains(Value<?> v) {
+        if (value instanceof IntList && ((IntList) value).isInts())
+            return containsInt((IntList) value, v);
+
+        if (value.size() < INDEX_THRESHOLD || !(v instanceof NumberValue || v instanceof TextValue))
+            return value.contains(v);
+
+        if (index == null || indexed != value.size()) {
+            index = new HashSet<Value<?>>();
+            for (Value<?> e : value)
+                if (e instanceof NumberValue || e instanceof TextValue)
+                    index.add(e);
+            indexed = value.size();
+        }
+
+        return index.contains(v);
+    }
+
+    private boolean containsInt(IntList list, Value<?> v) {
+        if (list.size() < INDEX_THRESHOLD || !(v instanceof NumberValue))
+            return list.contains(v);
+
+        if (intIndex == null || indexed != list.size()) {
+            intIndex = new IntSet(list.size());
+            for (int i = 0; i < list.size(); i++)
+                intIndex.add(list.intAt(i));
+            indexed = list.size();
+        }
+
+        return intIndex.contains(((NumberValue) v).intValue());
+    }
+
+    // A set of ints with open addressing. 0 marks an empty slot, so
+    // whether 0 is in the set is kept apart.
+    private static final class IntSet {
+
+        private int[] table;
+        private int count;
+        private boolean zero;
+
+        IntSet(int expected) {
+            int capacity = 16;
+            while (capacity < 2 * expected)
+                capacity *= 2;
+            table = new int[capacity];
+        }
+
+        void add(int n) {
+            if (n == 0) {
+                zero = true;
+                return;
+            }
+
+            if (2 * (count + 1) > table.length) {
+                int[] old = table;
+                table = new int[old.length * 2];
+                for (int k : old)
+                    if (k != 0)
+                        insert(table, k);
+            }
+
+            if (insert(table, n))
+                count++;
+        }
+
+        boolean contains(int n) {
+            if (n == 0)
+                return zero;
+
+            int mask = table.length - 1;
+            for (int i = hash(n) & mask; table[i] != 0; i = (i + 1) & mask)
+                if (table[i] == n)
+                    return true;
+
+            return false;
+        }
+
+        private static boolean insert(int[] table, int n) {
+            int mask = table.length - 1;
+            int i = hash(n) & mask;
+            while (table[i] != 0) {
+                if (table[i] == n)
+                    return false;
+                i = (i + 1) & mask;
+            }
+
+            table[i] = n;
+            return true;
+        }
+
+        private static int hash(int n) {
+            int h = n * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+    }
+
     @Override
     public boolean eval() {
         return !value.isEmpty();
@@ -41,9 +197,17 @@ public class ArrayValue extends Value<List<Value<?>>> {
         StringBuffer sb = new StringBuffer();
         sb.append("[");
 
-        for (Value<?> v : this.value) {
-            sb.append(v == null ? "null" : v.toString());
-            sb.append(", ");
+        if (value instanceof IntList && ((IntList) value).isInts()) {
+            IntList ints = (IntList) value;
+            for (int i = 0; i < ints.size(); i++) {
+                sb.append(ints.intAt(i));
+                sb.append(", ");
+            }
+        } else {
+            for (Value<?> v : this.value) {
+                sb.append(v == null ? "null" : v.toString());
+                sb.append(", ");
+            }
         }
 
         if (sb.length() > 1)
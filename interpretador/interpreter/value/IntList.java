@@ -0,0 +1,155 @@
+package interpreter.value;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// The default backing of arrays. While every element is a number they are
+// kept unboxed in an int[], 4 bytes each instead of a NumberValue apiece,
+// and get() creates the NumberValue on demand. The first element stored
+// that is not a number moves the list to an ArrayList of values for good.
+public class IntList extends AbstractList<Value<?>> implements RandomAccess {
+
+    private int[] ints;
+    private int size;
+    // The elements once the list holds something other than numbers.
+    private List<Value<?>> values;
+
+    public IntList() {
+        this.ints = new int[8];
+    }
+
+    private IntList(int[] ints, int size) {
+        this.ints = ints;
+        this.size = size;
+    }
+
+    // Returns a list with the same elements.
+    public IntList copy() {
+        if (values != null) {
+            IntList copy = new IntList(null, 0);
+            copy.values = new ArrayList<Value<?>>(values);
+            return copy;
+        }
+
+        return new IntList(Arrays.copyOf(ints, Math.max(size, 8)), size);
+    }
+
+    // Whether every element is a number, so intAt() can read them.
+    public boolean isInts() {
+        return values == null;
+    }
+
+    public int intAt(int index) {
+        check(index);
+        return ints[index];
+    }
+
+    @Override
+    public int size() {
+        return values != null ? values.size() : size;
+    }
+
+    @Override
+    public Value<?> get(int index) {
+        if (values != null)
+            return values.get(index);
+
+        check(index);
+        return NumberValue.of(ints[index]);
+    }
+
+    @Override
+    public Value<?> set(int index, Value<?> value) {
+        if (values == null) {
+            check(index);
+            if (value instanceof NumberValue) {
+                int old = ints[index];
+                ints[index] = ((NumberValue) value).intValue();
+                return NumberValue.of(old);
+            }
+
+            migrate();
+        }
+
+        return values.set(index, value);
+    }
+
+    @Override
+    public boolean add(Value<?> value) {
+        modCount++;
+        if (values == null) {
+            if (value instanceof NumberValue) {
+                if (size == ints.length)
+                    ints = Arrays.copyOf(ints, size * 2);
+                ints[size++] = ((NumberValue) value).intValue();
+                return true;
+            }
+
+            migrate();
+        }
+
+        return values.add(value);
+    }
+
+    // A number is inserted by shifting the ints after it up by one, so the
+    // list stays unboxed; anything else moves the list to values first.
+    @Override
+    public void add(int index, Value<?> value) {
+        modCount++;
+        if (values == null) {
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+            if (value instanceof NumberValue) {
+                if (size == ints.length)
+                    ints = Arrays.copyOf(ints, size * 2);
+                System.arraycopy(ints, index, ints, index + 1, size - index);
+                ints[index] = ((NumberValue) value).intValue();
+                size++;
+                return;
+            }
+
+            migrate();
+        }
+
+        values.add(index, value);
+    }
+
+    // Numbers only equal numbers, so other values are not searched for.
+    @Override
+    public int indexOf(Object o) {
+        if (values != null)
+            return values.indexOf(o);
+        if (!(o instanceof NumberValue))
+            return -1;
+
+        int n = ((NumberValue) o).intValue();
+        for (int i = 0; i < size; i++)
+            if (ints[i] == n)
+                return i;
+
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    private void migrate() {
+        values = new ArrayList<Value<?>>(Math.max(size * 2, 8));
+        for (int i = 0; i < size; i++)
+            values.add(NumberValue.of(ints[i]));
+        ints = null;
+        size = 0;
+    }
+
+    private void check(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+
+}
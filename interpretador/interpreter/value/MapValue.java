@@ -1,15 +1,37 @@
 package interpreter.value;
 
+import java.util.HashMap;
 import java.util.Map;
 
 public class MapValue extends Value<Map<String, Value<?>>> {
 
+    // Run with -Dinterpreter.value.persistent=true to back maps with
+    // PersistentMap, so copies share structure instead of entries.
+    private static final boolean PERSISTENT = Boolean.getBoolean("interpreter.value.persistent");
+
     private Map<String, Value<?>> value;
 
     public MapValue(Map<String, Value<?>> value) {
         this.value = value;
     }
 
+    public static Map<String, Value<?>> newMap() {
+        return PERSISTENT ? new PersistentMap() : new HashMap<String, Value<?>>();
+    }
+
+    public static Map<String, Value<?>> copyOf(Map<String, Value<?>> map) {
+        if (map instanceof PersistentMap)
+            return ((PersistentMap) map).copy();
+
+        // One put per entry into a default-sized table, like the merge loops
+        // this replaced: putAll sizes the table to the map, which changes
+        // the order println and keys() see.
+        Map<String, Value<?>> copy = new HashMap<String, Value<?>>();
+        for (Map.Entry<String, Value<?>> e : map.entrySet())
+            copy.put(e.getKey(), e.getValue());
+        return copy;
+    }
+
     @Override
     public Map<String, Value<?>> value() {
         return this.value;
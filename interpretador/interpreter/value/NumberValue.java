@@ -2,25 +2,48 @@ package interpreter.value;
 
 public class NumberValue extends Value<Integer> {
 
-    private Integer value;
+    // Values in [CACHE_LOW, CACHE_HIGH] are shared instances. The upper
+    // bound can be raised with -Dinterpreter.value.NumberValue.cache.high.
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH =
+        Math.max(127, Integer.getInteger("interpreter.value.NumberValue.cache.high", 1024));
+    private static final NumberValue[] cache = new NumberValue[CACHE_HIGH - CACHE_LOW + 1];
 
-    public NumberValue(Integer value) {
+    static {
+        for (int i = 0; i < cache.length; i++)
+            cache[i] = new NumberValue(i + CACHE_LOW);
+    }
+
+    private int value;
+
+    private NumberValue(int value) {
         this.value = value;
     }
 
+    public static NumberValue of(int value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH)
+            return cache[value - CACHE_LOW];
+
+        return new NumberValue(value);
+    }
+
     @Override
     public Integer value() {
         return this.value;
     }
 
+    public int intValue() {
+        return this.value;
+    }
+
     @Override
     public boolean eval() {
-        return value.intValue() != 0;
+        return value != 0;
     }
 
     @Override
     public int hashCode() {
-        return this.value.hashCode();
+        return Integer.hashCode(this.value);
     }
 
     @Override
@@ -28,7 +51,7 @@ public class NumberValue extends Value<Integer> {
         if (this == obj) {
             return true;
         } else if (obj instanceof NumberValue) {
-            return this.value.intValue() == ((NumberValue) obj).value.intValue();
+            return this.value == ((NumberValue) obj).value;
         } else {
             return false;
         }
@@ -36,7 +59,7 @@ public class NumberValue extends Value<Integer> {
 
     @Override
     public String toString() {
-        return this.value.toString();
+        return Integer.toString(this.value);
     }
 
 }
@@ -0,0 +1,260 @@
+package interpreter.value;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// A hash array mapped trie keyed by String. Like PersistentVector, each
+// instance is a mutable handle: copy() is O(1), later puts through either
+// handle copy only the path they touch, and nodes owned by the handle are
+// updated in place. Iteration follows the trie, not insertion order.
+public class PersistentMap extends AbstractMap<String, Value<?>> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NONE = new Object();
+
+    // A bitmap node stores [key, value] pairs in array, or [null, Node]
+    // for a child. A collision node, used once the hash is exhausted,
+    // stores plain pairs whose keys share one hash.
+    private static final class Node {
+        final Object edit;
+        final boolean collision;
+        int bitmap;
+        Object[] array;
+
+        Node(Object edit, boolean collision, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.collision = collision;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+    }
+
+    private Object edit;
+    private int size;
+    private Node root;
+    private boolean added;
+
+    public PersistentMap() {
+        this.edit = new Object();
+        this.size = 0;
+        this.root = new Node(edit, false, 0, new Object[0]);
+    }
+
+    private PersistentMap(int size, Node root) {
+        this.edit = new Object();
+        this.size = size;
+        this.root = root;
+    }
+
+    // Returns a map with the same entries that shares this one's nodes.
+    public PersistentMap copy() {
+        edit = new Object();
+        return new PersistentMap(size, root);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && lookup((String) key) != NONE;
+    }
+
+    @Override
+    public Value<?> get(Object key) {
+        if (!(key instanceof String))
+            return null;
+
+        Object value = lookup((String) key);
+        return value == NONE ? null : (Value<?>) value;
+    }
+
+    @Override
+    public Value<?> put(String key, Value<?> value) {
+        Value<?> old = get(key);
+        added = false;
+        root = put(root, 0, hash(key), key, value);
+        if (added)
+            size++;
+
+        return old;
+    }
+
+    @Override
+    public Set<Entry<String, Value<?>>> entrySet() {
+        return new AbstractSet<Entry<String, Value<?>>>() {
+            @Override
+            public Iterator<Entry<String, Value<?>>> iterator() {
+                return new Entries(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    // Returns the value mapped to key, or NONE.
+    private Object lookup(String key) {
+        int hash = hash(key);
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (node.collision) {
+                for (int i = 0; i < node.array.length; i += 2)
+                    if (key.equals(node.array[i]))
+                        return node.array[i + 1];
+
+                return NONE;
+            }
+
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0)
+                return NONE;
+
+            int idx = 2 * index(node.bitmap, bit);
+            Object k = node.array[idx];
+            Object v = node.array[idx + 1];
+            if (k == null)
+                node = (Node) v;
+            else
+                return key.equals(k) ? v : NONE;
+        }
+    }
+
+    private Node put(Node node, int shift, int hash, String key, Value<?> value) {
+        if (node.collision) {
+            for (int i = 0; i < node.array.length; i += 2) {
+                if (key.equals(node.array[i])) {
+                    Node ret = editable(node);
+                    ret.array[i + 1] = value;
+                    return ret;
+                }
+            }
+
+            Node ret = editable(node);
+            ret.array = insert(node.array, node.array.length, key, value);
+            added = true;
+            return ret;
+        }
+
+        int bit = bit(hash, shift);
+        int idx = 2 * index(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            Node ret = editable(node);
+            ret.array = insert(node.array, idx, key, value);
+            ret.bitmap |= bit;
+            added = true;
+            return ret;
+        }
+
+        Object k = node.array[idx];
+        Object v = node.array[idx + 1];
+        Node ret = editable(node);
+        if (k == null) {
+            ret.array[idx + 1] = put((Node) v, shift + BITS, hash, key, value);
+        } else if (key.equals(k)) {
+            ret.array[idx + 1] = value;
+        } else {
+            ret.array[idx] = null;
+            ret.array[idx + 1] = split(shift + BITS, (String) k, (Value<?>) v, hash, key, value);
+            added = true;
+        }
+
+        return ret;
+    }
+
+    // Builds the subtree holding two keys that collided at shift.
+    private Node split(int shift, String k1, Value<?> v1, int h2, String k2, Value<?> v2) {
+        int h1 = hash(k1);
+        if (shift >= 32 || h1 == h2)
+            return new Node(edit, true, 0, new Object[] { k1, v1, k2, v2 });
+
+        int b1 = bit(h1, shift);
+        int b2 = bit(h2, shift);
+        if (b1 == b2)
+            return new Node(edit, false, b1, new Object[] { null, split(shift + BITS, k1, v1, h2, k2, v2) });
+
+        Object[] array = Integer.compareUnsigned(b1, b2) < 0 ? new Object[] { k1, v1, k2, v2 }
+                                 : new Object[] { k2, v2, k1, v1 };
+        return new Node(edit, false, b1 | b2, array);
+    }
+
+    private Node editable(Node node) {
+        return node.edit == edit ? node
+            : new Node(edit, node.collision, node.bitmap, node.array.clone());
+    }
+
+    private static Object[] insert(Object[] array, int idx, Object key, Object value) {
+        Object[] ret = new Object[array.length + 2];
+        System.arraycopy(array, 0, ret, 0, idx);
+        ret[idx] = key;
+        ret[idx + 1] = value;
+        System.arraycopy(array, idx, ret, idx + 2, array.length - idx);
+        return ret;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static final class Entries implements Iterator<Entry<String, Value<?>>> {
+        private Deque<Node> nodes;
+        private Node node;
+        private int pos;
+
+        Entries(Node root) {
+            nodes = new ArrayDeque<Node>();
+            node = root;
+            pos = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                while (pos < node.array.length) {
+                    if (node.array[pos] != null)
+                        return true;
+
+                    nodes.push((Node) node.array[pos + 1]);
+                    pos += 2;
+                }
+
+                if (nodes.isEmpty())
+                    return false;
+
+                node = nodes.pop();
+                pos = 0;
+            }
+        }
+
+        @Override
+        public Entry<String, Value<?>> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            String key = (String) node.array[pos];
+            Value<?> value = (Value<?>) node.array[pos + 1];
+            pos += 2;
+            return new SimpleImmutableEntry<String, Value<?>>(key, value);
+        }
+    }
+
+}
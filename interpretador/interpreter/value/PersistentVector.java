@@ -0,0 +1,189 @@
+package interpreter.value;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// A 32-way trie with a tail buffer, in the style of Clojure's vectors.
+// Each instance is a mutable handle over the trie: copy() is O(1) and
+// shares every node, and later writes through either handle copy only the
+// path they touch. Nodes created by a handle after its last copy() are
+// owned by it and are updated in place.
+public class PersistentVector extends AbstractList<Value<?>> implements RandomAccess {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final class Node {
+        final Object edit;
+        final Object[] array;
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+    }
+
+    private Object edit;
+    private int size;
+    private int shift;
+    private Node root;
+    private Node tail;
+
+    public PersistentVector() {
+        this.edit = new Object();
+        this.size = 0;
+        this.shift = BITS;
+        this.root = new Node(edit, new Object[WIDTH]);
+        this.tail = new Node(edit, new Object[WIDTH]);
+    }
+
+    private PersistentVector(int size, int shift, Node root, Node tail) {
+        this.edit = new Object();
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    // Returns a vector with the same elements that shares this one's nodes.
+    public PersistentVector copy() {
+        edit = new Object();
+        return new PersistentVector(size, shift, root, tail);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Value<?> get(int index) {
+        check(index);
+        return (Value<?>) leaf(index).array[index & MASK];
+    }
+
+    @Override
+    public Value<?> set(int index, Value<?> value) {
+        check(index);
+        Value<?> old;
+        if (index >= tailOffset()) {
+            tail = editable(tail);
+            old = (Value<?>) tail.array[index & MASK];
+            tail.array[index & MASK] = value;
+        } else {
+            old = get(index);
+            root = set(shift, root, index, value);
+        }
+
+        return old;
+    }
+
+    @Override
+    public boolean add(Value<?> value) {
+        if (size - tailOffset() < WIDTH) {
+            tail = editable(tail);
+            tail.array[size - tailOffset()] = value;
+        } else {
+            Node full = tail;
+            if ((size >>> BITS) > (1 << shift)) {
+                Node grown = new Node(edit, new Object[WIDTH]);
+                grown.array[0] = root;
+                grown.array[1] = path(shift, full);
+                root = grown;
+                shift += BITS;
+            } else {
+                root = push(shift, root, full);
+            }
+
+            tail = new Node(edit, new Object[WIDTH]);
+            tail.array[0] = value;
+        }
+
+        size++;
+        modCount++;
+        return true;
+    }
+
+    // The trie has no room between elements, so the elements from index on
+    // are rewritten one place further along, after appending the last one.
+    // Only the paths to those leaves are copied; the ones before index stay
+    // shared.
+    @Override
+    public void add(int index, Value<?> value) {
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        if (index == size) {
+            add(value);
+            return;
+        }
+
+        add(get(size - 1));
+        for (int i = size - 2; i > index; i--)
+            set(i, get(i - 1));
+        set(index, value);
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Node leaf(int index) {
+        if (index >= tailOffset())
+            return tail;
+
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Node) node.array[(index >>> level) & MASK];
+
+        return node;
+    }
+
+    private Node set(int level, Node node, int index, Value<?> value) {
+        Node ret = editable(node);
+        if (level == 0) {
+            ret.array[index & MASK] = value;
+        } else {
+            int sub = (index >>> level) & MASK;
+            ret.array[sub] = set(level - BITS, (Node) node.array[sub], index, value);
+        }
+
+        return ret;
+    }
+
+    private Node push(int level, Node parent, Node full) {
+        Node ret = editable(parent);
+        int sub = ((size - 1) >>> level) & MASK;
+        Node insert;
+        if (level == BITS) {
+            insert = full;
+        } else {
+            Node child = (Node) parent.array[sub];
+            insert = child != null ? push(level - BITS, child, full)
+                                   : path(level - BITS, full);
+        }
+
+        ret.array[sub] = insert;
+        return ret;
+    }
+
+    private Node path(int level, Node node) {
+        if (level == 0)
+            return node;
+
+        Node ret = new Node(edit, new Object[WIDTH]);
+        ret.array[0] = path(level - BITS, node);
+        return ret;
+    }
+
+    private Node editable(Node node) {
+        return node.edit == edit ? node : new Node(edit, node.array.clone());
+    }
+
+    private void check(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+    }
+
+}
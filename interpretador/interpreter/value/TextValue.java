@@ -2,25 +2,67 @@ package interpreter.value;
 
 public class TextValue extends Value<String> {
 
+    // Texts at least this long are built in a shared StringBuilder.
+    private static final int BUILDER_MIN = 64;
+
+    // Either value holds the text, or the text is the first length chars of
+    // builder and value caches it once it is read. Appending to the newest
+    // text of a builder extends the builder in place, so a chain of appends
+    // costs amortized O(1) each; older texts keep seeing their own prefix.
     private String value;
+    private StringBuilder builder;
+    private int length;
 
     public TextValue(String value) {
         this.value = value;
+        this.length = value.length();
+    }
+
+    private TextValue(StringBuilder builder, int length) {
+        this.builder = builder;
+        this.length = length;
+    }
+
+    // Returns this text followed by s.
+    public TextValue concat(String s) {
+        if (builder != null) {
+            synchronized (builder) {
+                if (builder.length() == length) {
+                    builder.append(s);
+                    return new TextValue(builder, builder.length());
+                }
+            }
+        }
+
+        String v = value();
+        int n = v.length() + s.length();
+        if (n < BUILDER_MIN)
+            return new TextValue(v + s);
+
+        StringBuilder sb = new StringBuilder(2 * n);
+        sb.append(v).append(s);
+        return new TextValue(sb, n);
     }
 
     @Override
     public String value() {
+        if (this.value == null) {
+            synchronized (builder) {
+                this.value = builder.substring(0, length);
+            }
+        }
+
         return this.value;
     }
 
     @Override
     public boolean eval() {
-        return !value.equals("");
+        return length != 0;
     }
 
     @Override
     public int hashCode() {
-        return this.value.hashCode();
+        return this.value().hashCode();
     }
 
     @Override
@@ -28,7 +70,8 @@ public class TextValue extends Value<String> {
         if (this == obj) {
             return true;
         } else if (obj instanceof TextValue) {
-            return this.value.equals(((TextValue) obj).value);
+            TextValue other = (TextValue) obj;
+            return this.length == other.length && this.value().equals(other.value());
         } else {
             return false;
         }
@@ -36,7 +79,7 @@ public class TextValue extends Value<String> {
 
     @Override
     public String toString() {
-        return this.value.toString();
+        return this.value();
     }
 
 }
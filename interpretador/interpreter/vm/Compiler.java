@@ -0,0 +1,552 @@
+package interpreter.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import interpreter.command.AssignCommand;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.DeclarationType1Command;
+import interpreter.command.DeclarationType2Command;
+import interpreter.command.ForCommand;
+import interpreter.command.ForeachCommand;
+import interpreter.command.IfCommand;
+import interpreter.command.PrintCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.ArrayExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CaseItem;
+import interpreter.expr.CastExpr;
+import interpreter.expr.ConstExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.MapExpr;
+import interpreter.expr.MapItem;
+import interpreter.expr.SetExpr;
+import interpreter.expr.SwitchExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.expr.Variable;
+import interpreter.value.BooleanValue;
+import interpreter.value.TextValue;
+import interpreter.value.Value;
+
+// Lowers a Command tree into a flat register program. Every node is
+// evaluated in the same order as its execute()/expr(), so both back ends
+// print the same output. The register file is the Memory frame: variables,
+// which the Resolver has bound, are addressed directly by their slot and
+// temporaries live above the last slot.
+public class Compiler {
+
+    private int[] code;
+    private int size;
+    private List<Value<?>> constants;
+    private List<String> names;
+    private Map<String, Integer> nameIndex;
+    private List<Expr> exprs;
+    private List<Command> commands;
+    private List<Map<String, Integer>> tables;
+    private int nextRegister;
+    private int registers;
+    private int counters;
+    private boolean eager;
+
+    private int trueConst = -1;
+    private int falseConst = -1;
+    private int nullTextConst = -1;
+
+    private Compiler(int slots, boolean eager) {
+        code = new int[64];
+        constants = new ArrayList<Value<?>>();
+        names = new ArrayList<String>();
+        nameIndex = new HashMap<String, Integer>();
+        exprs = new ArrayList<Expr>();
+        commands = new ArrayList<Command>();
+        tables = new ArrayList<Map<String, Integer>>();
+        nextRegister = slots;
+        registers = nextRegister;
+        this.eager = eager;
+    }
+
+    // slots is the count returned by Resolver.resolve and eager whether &&
+    // and || evaluate both operands.
+    public static Program compile(Command cmd, int slots, boolean eager) {
+        Compiler c = new Compiler(slots, eager);
+        c.compileCommand(cmd);
+        c.emit(Opcode.HALT);
+
+        return new Program(Arrays.copyOf(c.code, c.size),
+            c.constants.toArray(new Value<?>[0]),
+            c.names.toArray(new String[0]),
+            c.exprs.toArray(new Expr[0]),
+            c.commands.toArray(new Command[0]),
+            c.tables,
+            c.registers, c.counters);
+    }
+
+    private void compileCommand(Command cmd) {
+        int mark = nextRegister;
+
+        if (cmd instanceof BlocksCommand) {
+            for (Command c : ((BlocksCommand) cmd).getCommands())
+                compileCommand(c);
+        } else if (cmd instanceof AssignCommand) {
+            compileAssign((AssignCommand) cmd);
+        } else if (cmd instanceof DeclarationType1Command) {
+            DeclarationType1Command dc = (DeclarationType1Command) cmd;
+            Variable var = dc.getLhs();
+            if (dc.getRhs() == null) {
+                emit(Opcode.LOADK, var.getSlot(), nullTextConstant());
+            } else {
+                compileAssign(var, dc.getRhs());
+            }
+        } else if (cmd instanceof DeclarationType2Command) {
+            DeclarationType2Command dc = (DeclarationType2Command) cmd;
+            int array = allocRegister();
+            compileExpr(dc.getRhs(), array);
+            List<Variable> vars = dc.getLhs();
+            for (int i = 0; i < vars.size(); i++)
+                emit(Opcode.UNPACK, vars.get(i).getSlot(), array, i);
+        } else if (cmd instanceof IfCommand) {
+            IfCommand ic = (IfCommand) cmd;
+            int jelse = compileCondition(ic.getExpr());
+            compileCommand(ic.getThenCommands());
+            if (ic.getElseCommands() != null) {
+                int jend = emitJump(Opcode.JMP, -1);
+                patch(jelse);
+                compileCommand(ic.getElseCommands());
+                patch(jend);
+            } else {
+                patch(jelse);
+            }
+        } else if (cmd instanceof WhileCommand) {
+            WhileCommand wc = (WhileCommand) cmd;
+            int top = size;
+            int jend = compileCondition(wc.getExpr());
+            compileCommand(wc.getCommands());
+            emit(Opcode.JMP, top);
+            patch(jend);
+        } else if (cmd instanceof ForCommand && ((ForCommand) cmd).getCond() != null) {
+            ForCommand fc = (ForCommand) cmd;
+            compileCommand(fc.getInit());
+            int top = size;
+            int jend = compileCondition(fc.getCond());
+            compileCommand(fc.getCommands());
+            compileCommand(fc.getInc());
+            emit(Opcode.JMP, top);
+            patch(jend);
+        } else if (cmd instanceof ForeachCommand) {
+            ForeachCommand fc = (ForeachCommand) cmd;
+            int array = allocRegister();
+            compileExpr(fc.getExpr(), array);
+            emit(Opcode.CHECKARRAY, array, fc.getLine());
+            int counter = counters++;
+            int r = fc.getVar().getSlot();
+            emit(Opcode.ITERINIT, counter);
+            int top = size;
+            emit(Opcode.ITERNEXT, r, array, counter, -1);
+            int jend = size - 1;
+            store(fc.getVar(), r);
+            compileCommand(fc.getCommands());
+            emit(Opcode.JMP, top);
+            code[jend] = size;
+        } else if (cmd instanceof PrintCommand) {
+            PrintCommand pc = (PrintCommand) cmd;
+            int r = allocRegister();
+            compileExpr(pc.getExpr(), r);
+            emit(Opcode.PRINT, r, pc.isNewline() ? 1 : 0);
+        } else {
+            commands.add(cmd);
+            emit(Opcode.EXEC, commands.size() - 1);
+        }
+
+        nextRegister = mark;
+    }
+
+    private void compileAssign(AssignCommand ac) {
+        SetExpr lhs = ac.getLhs();
+        if (ac.getOp() == AssignCommand.Op.StdOp) {
+            if (lhs instanceof Variable) {
+                compileAssign((Variable) lhs, ac.getRhs());
+            } else {
+                int r = allocRegister();
+                compileExpr(ac.getRhs(), r);
+                compileStore(lhs, r, ac.getLine());
+            }
+        } else {
+            int l = operand(lhs);
+            int r = lhs instanceof Variable ? ((Variable) lhs).getSlot() : l;
+            int rhs = operand(ac.getRhs());
+            emit(Opcode.ASSIGNOP, r, l, rhs, ac.getOp().ordinal(), ac.getLine());
+            compileStore(lhs, r, -1);
+        }
+    }
+
+    // A binary operation reads all its operands before writing its
+    // destination, so it can target the variable's slot directly. Other
+    // expressions may use the destination as scratch space first.
+    private void compileAssign(Variable var, Expr rhs) {
+        int r = rhs instanceof BinaryExpr ? var.getSlot() : allocRegister();
+        compileExpr(rhs, r);
+        compileStore(var, r, -1);
+    }
+
+    private void store(Variable var, int value) {
+        if (var.getSlot() != value)
+            emit(Opcode.MOVE, var.getSlot(), value);
+    }
+
+    private void compileStore(SetExpr lhs, int value, int guard) {
+        if (lhs instanceof Variable) {
+            store((Variable) lhs, value);
+        } else if (lhs instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) lhs;
+            int base = allocRegister();
+            compileExpr(ae.getBase(), base);
+            emit(Opcode.CHECKINDEXABLE, base, ae.getLine());
+            int index = allocRegister();
+            compileExpr(ae.getIndex(), index);
+            emit(Opcode.SETIDX, base, index, value, ae.getLine(), guard);
+        } else {
+            exprs.add(lhs);
+            emit(Opcode.STORE, exprs.size() - 1, value);
+        }
+    }
+
+    private void compileExpr(Expr expr, int dst) {
+        int mark = nextRegister;
+
+        if (expr instanceof ConstExpr) {
+            Value<?> v = ((ConstExpr) expr).getValue();
+            if (v == null)
+                emit(Opcode.LOADNULL, dst);
+            else
+                emit(Opcode.LOADK, dst, constant(v));
+        } else if (expr instanceof Variable) {
+            Variable var = (Variable) expr;
+            if (var.getSlot() != dst)
+                emit(Opcode.MOVE, dst, var.getSlot());
+        } else if (expr instanceof BinaryExpr && isShortCircuit((BinaryExpr) expr)) {
+            compileLogical((BinaryExpr) expr, dst);
+        } else if (expr instanceof BinaryExpr) {
+            BinaryExpr be = (BinaryExpr) expr;
+            int l = operand(be.getLeft());
+            int r = operand(be.getRight());
+            emit(binaryOpcode(be.getOp()), dst, l, r, be.getLine());
+        } else if (expr instanceof UnaryExpr) {
+            UnaryExpr ue = (UnaryExpr) expr;
+            compileExpr(ue.getExpr(), dst);
+            switch (ue.getOp()) {
+                case NotOp:
+                    emit(Opcode.NOT, dst, dst);
+                    break;
+                case NegOp:
+                    emit(Opcode.NEG, dst, dst, ue.getLine());
+                    break;
+                default:
+                    emit(Opcode.UNARY, dst, dst, ue.getOp().ordinal(), ue.getLine());
+            }
+        } else if (expr instanceof CastExpr) {
+            CastExpr ce = (CastExpr) expr;
+            compileExpr(ce.getExpr(), dst);
+            emit(Opcode.CAST, dst, dst, ce.getOp().ordinal(), ce.getLine());
+        } else if (expr instanceof AccessExpr) {
+            AccessExpr ae = (AccessExpr) expr;
+            compileExpr(ae.getBase(), dst);
+            emit(Opcode.CHECKINDEXABLE, dst, ae.getLine());
+            int r = allocRegister();
+            compileExpr(ae.getIndex(), r);
+            emit(Opcode.GETIDX, dst, dst, r, ae.getLine());
+        } else if (expr instanceof ArrayExpr) {
+            emit(Opcode.NEWARRAY, dst);
+            int r = allocRegister();
+            for (Expr e : ((ArrayExpr) expr).getList()) {
+                compileExpr(e, r);
+                emit(Opcode.APPEND, dst, r);
+            }
+        } else if (expr instanceof MapExpr) {
+            emit(Opcode.NEWMAP, dst);
+            int r = allocRegister();
+            for (MapItem item : ((MapExpr) expr).getItems()) {
+                compileExpr(item.value, r);
+                emit(Opcode.MAPPUT, dst, name(item.Key), r);
+            }
+        } else if (expr instanceof SwitchExpr) {
+            compileSwitch((SwitchExpr) expr, dst);
+        } else {
+            exprs.add(expr);
+            emit(Opcode.EVAL, dst, exprs.size() - 1);
+        }
+
+        nextRegister = mark;
+    }
+
+    // The operands are evaluated into a temporary and dst is written last,
+    // so dst may be a slot the right operand reads.
+    private void compileLogical(BinaryExpr be, int dst) {
+        boolean and = be.getOp() == BinaryExpr.Op.AndOp;
+        int jump = and ? Opcode.JMPF : Opcode.JMPT;
+        int r = allocRegister();
+        compileExpr(be.getLeft(), r);
+        int j1 = emitJump(jump, r);
+        compileExpr(be.getRight(), r);
+        int j2 = emitJump(jump, r);
+        emit(Opcode.LOADK, dst, booleanConstant(and));
+        int jend = emitJump(Opcode.JMP, -1);
+        patch(join(j1, j2));
+        emit(Opcode.LOADK, dst, booleanConstant(!and));
+        patch(jend);
+    }
+
+    private boolean isShortCircuit(BinaryExpr be) {
+        return !eager &&
+            (be.getOp() == BinaryExpr.Op.AndOp || be.getOp() == BinaryExpr.Op.OrOp);
+    }
+
+    // Emits the jumps taken when expr is false and returns their patch
+    // chain. Numeric comparisons jump directly instead of materializing a
+    // boolean, and short-circuit operators branch on each operand.
+    private int compileCondition(Expr expr) {
+        int mark = nextRegister;
+        int jump;
+
+        int op = expr instanceof BinaryExpr ?
+            conditionOpcode(((BinaryExpr) expr).getOp()) : -1;
+        if (expr instanceof BinaryExpr && isShortCircuit((BinaryExpr) expr)) {
+            BinaryExpr be = (BinaryExpr) expr;
+            if (be.getOp() == BinaryExpr.Op.AndOp) {
+                int j1 = compileCondition(be.getLeft());
+                jump = join(j1, compileCondition(be.getRight()));
+            } else {
+                int r = allocRegister();
+                compileExpr(be.getLeft(), r);
+                int jtrue = emitJump(Opcode.JMPT, r);
+                jump = compileCondition(be.getRight());
+                patch(jtrue);
+            }
+        } else if (op >= 0) {
+            BinaryExpr be = (BinaryExpr) expr;
+            int l = operand(be.getLeft());
+            int r = operand(be.getRight());
+            emit(op, l, r, -1, be.getLine());
+            jump = size - 2;
+        } else {
+            int r = allocRegister();
+            compileExpr(expr, r);
+            jump = emitJump(Opcode.JMPF, r);
+        }
+
+        nextRegister = mark;
+        return jump;
+    }
+
+    // Constants are encoded inline as ~index and variables by their slot,
+    // anything else goes through a fresh register.
+    private int operand(Expr expr) {
+        if (expr instanceof ConstExpr)
+            return ~constant(((ConstExpr) expr).getValue());
+        if (expr instanceof Variable)
+            return ((Variable) expr).getSlot();
+
+        int r = allocRegister();
+        compileExpr(expr, r);
+        return r;
+    }
+
+    private void compileSwitch(SwitchExpr se, int dst) {
+        if (se.getTable() != null) {
+            compileTableSwitch(se, dst);
+            return;
+        }
+
+        int scrutinee = allocRegister();
+        compileExpr(se.getExpr(), scrutinee);
+        emit(Opcode.TOSTR, scrutinee, scrutinee);
+
+        int matched = allocRegister();
+        emit(Opcode.LOADK, matched, booleanConstant(false));
+        int key1 = allocRegister();
+        int key2 = allocRegister();
+        for (CaseItem item : se.getCases()) {
+            compileExpr(item.key, key1);
+            compileExpr(item.key, key2);
+            emit(Opcode.JNCASE, scrutinee, key1, key2, -1);
+            int jnext = size - 1;
+            compileExpr(item.value, dst);
+            emit(Opcode.LOADK, matched, booleanConstant(true));
+            code[jnext] = size;
+        }
+
+        int jend = emitJump(Opcode.JMPT, matched);
+        if (se.getDefault() == null)
+            emit(Opcode.LOADK, dst, nullTextConstant());
+        else
+            compileExpr(se.getDefault(), dst);
+        patch(jend);
+    }
+
+    // Constant keys dispatch through a hash table to one block per key,
+    // which evaluates every case with that key so the last one wins.
+    private void compileTableSwitch(SwitchExpr se, int dst) {
+        int scrutinee = allocRegister();
+        compileExpr(se.getExpr(), scrutinee);
+        Map<String, Integer> targets = new HashMap<String, Integer>();
+        tables.add(targets);
+        emit(Opcode.SWITCH, scrutinee, tables.size() - 1, -1);
+        int jdefault = size - 1;
+
+        int jend = -1;
+        for (Map.Entry<String, int[]> e : se.getTable().entrySet()) {
+            targets.put(e.getKey(), size);
+            for (int i : e.getValue())
+                compileExpr(se.getCases().get(i).value, dst);
+            jend = join(jend, emitJump(Opcode.JMP, -1));
+        }
+
+        patch(jdefault);
+        if (se.getDefault() == null)
+            emit(Opcode.LOADK, dst, nullTextConstant());
+        else
+            compileExpr(se.getDefault(), dst);
+        patch(jend);
+    }
+
+    private static int binaryOpcode(BinaryExpr.Op op) {
+        switch (op) {
+            case AndOp:
+                return Opcode.AND;
+            case OrOp:
+                return Opcode.OR;
+            case EqualOp:
+                return Opcode.EQ;
+            case NotEqualOp:
+                return Opcode.NE;
+            case LowerThanOp:
+                return Opcode.LT;
+            case LowerEqualOp:
+                return Opcode.LE;
+            case GreaterThanOp:
+                return Opcode.GT;
+            case GreaterEqualOp:
+                return Opcode.GE;
+            case ContainsOp:
+                return Opcode.IN;
+            case NotContainsOp:
+                return Opcode.NIN;
+            case AddOp:
+                return Opcode.ADD;
+            case SubOp:
+                return Opcode.SUB;
+            case MulOp:
+                return Opcode.MUL;
+            case DivOp:
+                return Opcode.DIV;
+            case ModOp:
+                return Opcode.MOD;
+            case PowerOp:
+                return Opcode.POW;
+            default:
+                throw new IllegalArgumentException("Unknown operator " + op);
+        }
+    }
+
+    private static int conditionOpcode(BinaryExpr.Op op) {
+        switch (op) {
+            case LowerThanOp:
+                return Opcode.JNLT;
+            case LowerEqualOp:
+                return Opcode.JNLE;
+            case GreaterThanOp:
+                return Opcode.JNGT;
+            case GreaterEqualOp:
+                return Opcode.JNGE;
+            default:
+                return -1;
+        }
+    }
+
+    private int allocRegister() {
+        int r = nextRegister++;
+        if (nextRegister > registers)
+            registers = nextRegister;
+
+        return r;
+    }
+
+    private int constant(Value<?> v) {
+        constants.add(v);
+        return constants.size() - 1;
+    }
+
+    private int booleanConstant(boolean b) {
+        if (b) {
+            if (trueConst < 0)
+                trueConst = constant(BooleanValue.of(true));
+            return trueConst;
+        } else {
+            if (falseConst < 0)
+                falseConst = constant(BooleanValue.of(false));
+            return falseConst;
+        }
+    }
+
+    private int nullTextConstant() {
+        if (nullTextConst < 0)
+            nullTextConst = constant(new TextValue("null"));
+
+        return nullTextConst;
+    }
+
+    private int name(String name) {
+        Integer idx = nameIndex.get(name);
+        if (idx == null) {
+            idx = names.size();
+            names.add(name);
+            nameIndex.put(name, idx);
+        }
+
+        return idx;
+    }
+
+    private int emitJump(int op, int r) {
+        if (op == Opcode.JMP)
+            emit(op, -1);
+        else
+            emit(op, r, -1);
+
+        return size - 1;
+    }
+
+    // Unpatched jump targets link to the next jump of the same chain,
+    // ending in -1, so patch() resolves them all at once.
+    private void patch(int jump) {
+        while (jump >= 0) {
+            int next = code[jump];
+            code[jump] = size;
+            jump = next;
+        }
+    }
+
+    private int join(int chain, int jump) {
+        if (jump < 0)
+            return chain;
+
+        int last = jump;
+        while (code[last] >= 0)
+            last = code[last];
+
+        code[last] = chain;
+        return jump;
+    }
+
+    private void emit(int... words) {
+        if (size + words.length > code.length)
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+
+        System.arraycopy(words, 0, code, size, words.length);
+        size += words.length;
+    }
+
+}
@@ -0,0 +1,395 @@
+package interpreter.vm;
+
+import java.util.List;
+import java.util.Map;
+
+import interpreter.ExecutionContext;
+import interpreter.command.AssignCommand;
+import interpreter.command.Command;
+import interpreter.expr.AccessExpr;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.CastExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.SetExpr;
+import interpreter.expr.UnaryExpr;
+import interpreter.util.InterpreterException;
+import interpreter.util.Utils;
+import interpreter.value.ArrayValue;
+import interpreter.value.BooleanValue;
+import interpreter.value.MapValue;
+import interpreter.value.NumberValue;
+import interpreter.value.TextValue;
+import interpreter.value.Value;
+
+public class Machine {
+
+    private static final UnaryExpr.Op[] UNARY_OPS = UnaryExpr.Op.values();
+    private static final CastExpr.CastOp[] CAST_OPS = CastExpr.CastOp.values();
+    private static final AssignCommand.Op[] ASSIGN_OPS = AssignCommand.Op.values();
+
+    private Machine() {
+    }
+
+    public static void run(Program program, ExecutionContext ctx) {
+        int[] code = program.getCode();
+        Value<?>[] constants = program.getConstants();
+        String[] names = program.getNames();
+        Expr[] exprs = program.getExprs();
+        Command[] commands = program.getCommands();
+        List<Map<String, Integer>> tables = program.getTables();
+        Value<?>[] regs = ctx.getMemory().frame(program.getRegisters());
+        int[] counters = new int[program.getCounters()];
+
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+                case Opcode.LOADK:
+                    regs[code[pc + 1]] = constants[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.LOADNULL:
+                    regs[code[pc + 1]] = null;
+                    pc += 2;
+                    break;
+                case Opcode.MOVE:
+                    regs[code[pc + 1]] = regs[code[pc + 2]];
+                    pc += 3;
+                    break;
+                case Opcode.GETIDX:
+                    regs[code[pc + 1]] = AccessExpr.get(code[pc + 4],
+                        regs[code[pc + 2]], regs[code[pc + 3]]);
+                    pc += 5;
+                    break;
+                case Opcode.SETIDX:
+                    setIndex(code[pc + 4], code[pc + 5], regs[code[pc + 1]],
+                        regs[code[pc + 2]], regs[code[pc + 3]]);
+                    pc += 6;
+                    break;
+                case Opcode.STORE:
+                    ((SetExpr) exprs[code[pc + 1]]).setValue(ctx, regs[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Opcode.EVAL:
+                    regs[code[pc + 1]] = exprs[code[pc + 2]].expr(ctx);
+                    pc += 3;
+                    break;
+                case Opcode.EXEC:
+                    commands[code[pc + 1]].execute(ctx);
+                    pc += 2;
+                    break;
+
+                case Opcode.AND:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.AndOp);
+                    pc += 5;
+                    break;
+                case Opcode.OR:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.OrOp);
+                    pc += 5;
+                    break;
+                case Opcode.EQ:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.EqualOp);
+                    pc += 5;
+                    break;
+                case Opcode.NE:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.NotEqualOp);
+                    pc += 5;
+                    break;
+                case Opcode.LT: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    if (l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = BooleanValue.of(
+                            ((NumberValue) l).intValue() < ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = BinaryExpr.apply(code[pc + 4],
+                            BinaryExpr.Op.LowerThanOp, l, r);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.LE:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.LowerEqualOp);
+                    pc += 5;
+                    break;
+                case Opcode.GT:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.GreaterThanOp);
+                    pc += 5;
+                    break;
+                case Opcode.GE:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.GreaterEqualOp);
+                    pc += 5;
+                    break;
+                case Opcode.IN:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.ContainsOp);
+                    pc += 5;
+                    break;
+                case Opcode.NIN:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.NotContainsOp);
+                    pc += 5;
+                    break;
+                case Opcode.ADD: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    if (l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = NumberValue.of(
+                            ((NumberValue) l).intValue() + ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = BinaryExpr.apply(code[pc + 4],
+                            BinaryExpr.Op.AddOp, l, r);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.SUB: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    if (l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = NumberValue.of(
+                            ((NumberValue) l).intValue() - ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = BinaryExpr.apply(code[pc + 4],
+                            BinaryExpr.Op.SubOp, l, r);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.MUL: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    if (l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = NumberValue.of(
+                            ((NumberValue) l).intValue() * ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = BinaryExpr.apply(code[pc + 4],
+                            BinaryExpr.Op.MulOp, l, r);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.DIV: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    if (l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = NumberValue.of(
+                            ((NumberValue) l).intValue() / ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = BinaryExpr.apply(code[pc + 4],
+                            BinaryExpr.Op.DivOp, l, r);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.MOD: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    if (l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = NumberValue.of(
+                            ((NumberValue) l).intValue() % ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = BinaryExpr.apply(code[pc + 4],
+                            BinaryExpr.Op.ModOp, l, r);
+                    pc += 5;
+                    break;
+                }
+                case Opcode.POW:
+                    regs[code[pc + 1]] = binary(code, pc, regs, constants, BinaryExpr.Op.PowerOp);
+                    pc += 5;
+                    break;
+
+                case Opcode.NOT: {
+                    Value<?> v = regs[code[pc + 2]];
+                    regs[code[pc + 1]] = BooleanValue.of(!(v != null && v.eval()));
+                    pc += 3;
+                    break;
+                }
+                case Opcode.NEG:
+                    regs[code[pc + 1]] = UnaryExpr.apply(ctx, code[pc + 3],
+                        UnaryExpr.Op.NegOp, regs[code[pc + 2]]);
+                    pc += 4;
+                    break;
+                case Opcode.UNARY:
+                    regs[code[pc + 1]] = UnaryExpr.apply(ctx, code[pc + 4],
+                        UNARY_OPS[code[pc + 3]], regs[code[pc + 2]]);
+                    pc += 5;
+                    break;
+                case Opcode.CAST:
+                    regs[code[pc + 1]] = CastExpr.apply(code[pc + 4],
+                        CAST_OPS[code[pc + 3]], regs[code[pc + 2]]);
+                    pc += 5;
+                    break;
+                case Opcode.ASSIGNOP: {
+                    Value<?> l = rk(regs, constants, code[pc + 2]);
+                    Value<?> r = rk(regs, constants, code[pc + 3]);
+                    AssignCommand.Op op = ASSIGN_OPS[code[pc + 4]];
+                    if (op == AssignCommand.Op.AddOp &&
+                            l instanceof NumberValue && r instanceof NumberValue)
+                        regs[code[pc + 1]] = NumberValue.of(
+                            ((NumberValue) l).intValue() + ((NumberValue) r).intValue());
+                    else
+                        regs[code[pc + 1]] = AssignCommand.apply(code[pc + 5], op, l, r);
+                    pc += 6;
+                    break;
+                }
+
+                case Opcode.NEWARRAY:
+                    regs[code[pc + 1]] = new ArrayValue(ArrayValue.newList());
+                    pc += 2;
+                    break;
+                case Opcode.APPEND:
+                    ((ArrayValue) regs[code[pc + 1]]).add(regs[code[pc + 2]]);
+                    pc += 3;
+                    break;
+                case Opcode.NEWMAP:
+                    regs[code[pc + 1]] = new MapValue(MapValue.newMap());
+                    pc += 2;
+                    break;
+                case Opcode.MAPPUT:
+                    ((MapValue) regs[code[pc + 1]]).value().put(names[code[pc + 2]],
+                        regs[code[pc + 3]]);
+                    pc += 4;
+                    break;
+                case Opcode.UNPACK: {
+                    List<Value<?>> list = ((ArrayValue) regs[code[pc + 2]]).value();
+                    int i = code[pc + 3];
+                    regs[code[pc + 1]] = i < list.size() ? list.get(i) : new TextValue("null");
+                    pc += 4;
+                    break;
+                }
+
+                case Opcode.JMP:
+                    pc = code[pc + 1];
+                    break;
+                case Opcode.JMPF: {
+                    Value<?> v = regs[code[pc + 1]];
+                    pc = v != null && v.eval() ? pc + 3 : code[pc + 2];
+                    break;
+                }
+                case Opcode.JMPT: {
+                    Value<?> v = regs[code[pc + 1]];
+                    pc = v != null && v.eval() ? code[pc + 2] : pc + 3;
+                    break;
+                }
+                case Opcode.JNLT: {
+                    Value<?> l = rk(regs, constants, code[pc + 1]);
+                    Value<?> r = rk(regs, constants, code[pc + 2]);
+                    boolean b = l instanceof NumberValue && r instanceof NumberValue ?
+                        ((NumberValue) l).intValue() < ((NumberValue) r).intValue() :
+                        compare(code, pc, regs, constants, BinaryExpr.Op.LowerThanOp);
+                    pc = b ? pc + 5 : code[pc + 3];
+                    break;
+                }
+                case Opcode.JNLE: {
+                    Value<?> l = rk(regs, constants, code[pc + 1]);
+                    Value<?> r = rk(regs, constants, code[pc + 2]);
+                    boolean b = l instanceof NumberValue && r instanceof NumberValue ?
+                        ((NumberValue) l).intValue() <= ((NumberValue) r).intValue() :
+                        compare(code, pc, regs, constants, BinaryExpr.Op.LowerEqualOp);
+                    pc = b ? pc + 5 : code[pc + 3];
+                    break;
+                }
+                case Opcode.JNGT: {
+                    Value<?> l = rk(regs, constants, code[pc + 1]);
+                    Value<?> r = rk(regs, constants, code[pc + 2]);
+                    boolean b = l instanceof NumberValue && r instanceof NumberValue ?
+                        ((NumberValue) l).intValue() > ((NumberValue) r).intValue() :
+                        compare(code, pc, regs, constants, BinaryExpr.Op.GreaterThanOp);
+                    pc = b ? pc + 5 : code[pc + 3];
+                    break;
+                }
+                case Opcode.JNGE: {
+                    Value<?> l = rk(regs, constants, code[pc + 1]);
+                    Value<?> r = rk(regs, constants, code[pc + 2]);
+                    boolean b = l instanceof NumberValue && r instanceof NumberValue ?
+                        ((NumberValue) l).intValue() >= ((NumberValue) r).intValue() :
+                        compare(code, pc, regs, constants, BinaryExpr.Op.GreaterEqualOp);
+                    pc = b ? pc + 5 : code[pc + 3];
+                    break;
+                }
+                case Opcode.TOSTR:
+                    regs[code[pc + 1]] = new TextValue(regs[code[pc + 2]].toString());
+                    pc += 3;
+                    break;
+                case Opcode.JNCASE: {
+                    String v1 = ((TextValue) regs[code[pc + 1]]).value();
+                    String v2 = regs[code[pc + 2]] != null ?
+                        regs[code[pc + 3]].toString() : "null";
+                    pc = v1.equals(v2) ? pc + 5 : code[pc + 4];
+                    break;
+                }
+                case Opcode.SWITCH: {
+                    Integer target = tables.get(code[pc + 2]).get(regs[code[pc + 1]].toString());
+                    pc = target != null ? target : code[pc + 3];
+                    break;
+                }
+                case Opcode.CHECKARRAY:
+                    if (!(regs[code[pc + 1]] instanceof ArrayValue))
+                        Utils.abort(code[pc + 2]);
+                    pc += 3;
+                    break;
+                case Opcode.CHECKINDEXABLE:
+                    if (!(regs[code[pc + 1]] instanceof ArrayValue)
+                            && !(regs[code[pc + 1]] instanceof MapValue))
+                        Utils.abort(code[pc + 2]);
+                    pc += 3;
+                    break;
+                case Opcode.ITERINIT:
+                    counters[code[pc + 1]] = 0;
+                    pc += 2;
+                    break;
+                case Opcode.ITERNEXT: {
+                    List<Value<?>> list = ((ArrayValue) regs[code[pc + 2]]).value();
+                    int i = counters[code[pc + 3]];
+                    if (i < list.size()) {
+                        regs[code[pc + 1]] = list.get(i);
+                        counters[code[pc + 3]] = i + 1;
+                        pc += 5;
+                    } else {
+                        pc = code[pc + 4];
+                    }
+                    break;
+                }
+
+                case Opcode.PRINT: {
+                    Value<?> v = regs[code[pc + 1]];
+                    ctx.getOutput().print(v == null ? "null" : v.toString());
+                    if (code[pc + 2] != 0)
+                        ctx.getOutput().println();
+                    pc += 3;
+                    break;
+                }
+                case Opcode.HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Invalid opcode " + code[pc]);
+            }
+        }
+    }
+
+    private static Value<?> binary(int[] code, int pc, Value<?>[] regs,
+            Value<?>[] constants, BinaryExpr.Op op) {
+        return BinaryExpr.apply(code[pc + 4], op, rk(regs, constants, code[pc + 2]),
+            rk(regs, constants, code[pc + 3]));
+    }
+
+    private static Value<?> rk(Value<?>[] regs, Value<?>[] constants, int operand) {
+        return operand >= 0 ? regs[operand] : constants[~operand];
+    }
+
+    private static boolean compare(int[] code, int pc, Value<?>[] regs,
+            Value<?>[] constants, BinaryExpr.Op op) {
+        Value<?> v = BinaryExpr.apply(code[pc + 4], op, rk(regs, constants, code[pc + 1]),
+            rk(regs, constants, code[pc + 2]));
+        return v != null && v.eval();
+    }
+
+    private static void setIndex(int line, int guard, Value<?> base, Value<?> index, Value<?> value) {
+        if (guard < 0) {
+            AccessExpr.set(line, base, index, value);
+            return;
+        }
+
+        try {
+            AccessExpr.set(line, base, index, value);
+        } catch (InterpreterException e) {
+            throw e;
+        } catch (Exception e) {
+            Utils.abort(guard);
+        }
+    }
+
+}
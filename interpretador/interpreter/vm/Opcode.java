@@ -0,0 +1,100 @@
+package interpreter.vm;
+
+// Every instruction is an opcode followed by its operands in Program.code.
+// Operands named r* are register indexes, k a constant index, n a name
+// index, c a counter index, t a jump target and line a source line.
+// Operands named rk* are a register index, or ~k for a constant.
+public final class Opcode {
+
+    private Opcode() {
+    }
+
+    // LOADK r, k
+    public static final int LOADK = 0;
+    // LOADNULL r
+    public static final int LOADNULL = 1;
+    // GETIDX r, rbase, rindex, line
+    public static final int GETIDX = 4;
+    // SETIDX rbase, rindex, rvalue, line, guardline (-1 when unguarded)
+    public static final int SETIDX = 5;
+    // STORE expr, r
+    public static final int STORE = 6;
+    // EVAL r, expr
+    public static final int EVAL = 7;
+    // EXEC command
+    public static final int EXEC = 8;
+    // MOVE r, rsrc
+    public static final int MOVE = 9;
+
+    // AND .. POW r, rkleft, rkright, line
+    public static final int AND = 10;
+    public static final int OR = 11;
+    public static final int EQ = 12;
+    public static final int NE = 13;
+    public static final int LT = 14;
+    public static final int LE = 15;
+    public static final int GT = 16;
+    public static final int GE = 17;
+    public static final int IN = 18;
+    public static final int NIN = 19;
+    public static final int ADD = 20;
+    public static final int SUB = 21;
+    public static final int MUL = 22;
+    public static final int DIV = 23;
+    public static final int MOD = 24;
+    public static final int POW = 25;
+
+    // NOT r, rsrc
+    public static final int NOT = 30;
+    // NEG r, rsrc, line
+    public static final int NEG = 31;
+    // UNARY r, rsrc, op, line
+    public static final int UNARY = 32;
+    // CAST r, rsrc, op, line
+    public static final int CAST = 33;
+    // ASSIGNOP r, rleft, rkright, op, line
+    public static final int ASSIGNOP = 34;
+
+    // NEWARRAY r
+    public static final int NEWARRAY = 40;
+    // APPEND rarray, rvalue
+    public static final int APPEND = 41;
+    // NEWMAP r
+    public static final int NEWMAP = 42;
+    // MAPPUT rmap, n, rvalue
+    public static final int MAPPUT = 43;
+    // UNPACK r, rarray, index
+    public static final int UNPACK = 44;
+
+    // JMP t
+    public static final int JMP = 50;
+    // JMPF r, t
+    public static final int JMPF = 51;
+    // JMPT r, t
+    public static final int JMPT = 52;
+    // TOSTR r, rsrc
+    public static final int TOSTR = 53;
+    // JNCASE rscrutinee, rkey1, rkey2, t
+    public static final int JNCASE = 54;
+    // CHECKARRAY r, line
+    public static final int CHECKARRAY = 55;
+    // ITERINIT c
+    public static final int ITERINIT = 56;
+    // ITERNEXT r, rarray, c, t
+    public static final int ITERNEXT = 57;
+    // JNLT .. JNGE rkleft, rkright, t, line
+    public static final int JNLT = 58;
+    public static final int JNLE = 59;
+    public static final int JNGT = 60;
+    public static final int JNGE = 61;
+    // SWITCH rscrutinee, table, tdefault
+    public static final int SWITCH = 62;
+    // CHECKINDEXABLE r, line  (an array or a map)
+    public static final int CHECKINDEXABLE = 63;
+
+    // PRINT r, newline
+    public static final int PRINT = 70;
+    // HALT
+    public static final int HALT = 71;
+
+}
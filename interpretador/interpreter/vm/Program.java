@@ -0,0 +1,66 @@
+package interpreter.vm;
+
+import java.util.List;
+import java.util.Map;
+
+import interpreter.command.Command;
+import interpreter.expr.Expr;
+import interpreter.value.Value;
+
+public class Program {
+
+    private int[] code;
+    private Value<?>[] constants;
+    private String[] names;
+    private Expr[] exprs;
+    private Command[] commands;
+    private List<Map<String, Integer>> tables;
+    private int registers;
+    private int counters;
+
+    public Program(int[] code, Value<?>[] constants, String[] names,
+            Expr[] exprs, Command[] commands, List<Map<String, Integer>> tables,
+            int registers, int counters) {
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        this.exprs = exprs;
+        this.commands = commands;
+        this.tables = tables;
+        this.registers = registers;
+        this.counters = counters;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Value<?>[] getConstants() {
+        return constants;
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    public Expr[] getExprs() {
+        return exprs;
+    }
+
+    public Command[] getCommands() {
+        return commands;
+    }
+
+    public List<Map<String, Integer>> getTables() {
+        return tables;
+    }
+
+    public int getRegisters() {
+        return registers;
+    }
+
+    public int getCounters() {
+        return counters;
+    }
+
+}
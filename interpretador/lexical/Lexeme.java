@@ -4,6 +4,7 @@ public class Lexeme {
 
     public String token;
     public TokenType type;
+    public int line;
 
     public Lexeme(String token, TokenType type) {
         this.token = token;
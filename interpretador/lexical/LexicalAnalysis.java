@@ -1,39 +1,70 @@
 package lexical;
 
-import java.io.FileInputStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class LexicalAnalysis implements AutoCloseable {
 
+    // Files at least this large are memory-mapped instead of read whole.
+    private static final long MAP_THRESHOLD = 1 << 20;
+
     private int line;
     private SymbolTable st;
-    private PushbackInputStream input;
+    private StringBuilder token;
+    private ByteBuffer input;
+    private int length;
+    private int pos;
 
+    // The whole source is held in a buffer and scanned with a cursor, so
+    // getc/ungetc just move pos and never touch the file.
     public LexicalAnalysis(String filename) {
-        try {
-            input = new PushbackInputStream(new FileInputStream(filename), 2);
-        } catch (Exception e) {
-            throw new LexicalException("Unable to open file");
-        }
+        this(read(filename));
+    }
 
+    // Scans source already in memory.
+    public LexicalAnalysis(byte[] source) {
+        this(ByteBuffer.wrap(source));
+    }
+
+    private LexicalAnalysis(ByteBuffer input) {
+        this.input = input;
+        length = input.limit();
+        pos = 0;
         st = new SymbolTable();
+        token = new StringBuilder();
         line = 1;
     }
 
-    public void close() {
+    private static ByteBuffer read(String filename) {
         try {
-            input.close();
+            Path path = Paths.get(filename);
+            long size = Files.size(path);
+            if (size < MAP_THRESHOLD)
+                return ByteBuffer.wrap(Files.readAllBytes(path));
+
+            try (FileChannel channel = FileChannel.open(path)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
         } catch (Exception e) {
-            throw new LexicalException("Unable to close file");
+            throw new LexicalException("Unable to open file");
         }
     }
 
+    // Nothing to release: a mapping stays valid after its channel is
+    // closed and is unmapped when the buffer is collected.
+    public void close() {
+    }
+
     public int getLine() {
         return this.line;
     }
 
     public Lexeme nextToken() {
         Lexeme lex = new Lexeme("", TokenType.END_OF_FILE);
+        token.setLength(0);
         int state = 1;
         while (state != 14 && state != 15) {
             int c = getc();
@@ -48,36 +79,36 @@ public class LexicalAnalysis implements AutoCloseable {
                     line++;
                     state = 1;
                 } else if (c == '-') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 6;
                 } else if(c == '/') {
                 	//lex.token += (char) c;
                 	state = 2;
           		} else if(c == '*') {
-          			lex.token += (char)c;
+          			token.append((char) c);
           			state = 4;
           		} else if(c == '+' || c == '=' || c == '<' || c == '>' || c == '%') {
-          			lex.token += (char)c;
+          			token.append((char) c);
           			state = 5;
            		} else if (c == '.' || c == ',' || c == ';' || c == ':' ||
                             c == '(' || c == ')' || c == '[' || c == ']' ||
                             c == '{' || c == '}') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 14;
                 } else if (c == '!') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 7;
                 } else if (c == '&') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 9;
                 } else if(c == '|') {
-                	lex.token += (char) c;
+                	token.append((char) c);
                     state = 10;
            		} else if (c == '_' || c == '$' || Character.isLetter(c)) {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 11;
                 } else if (Character.isDigit(c)) {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 12;
                 } else if(c == '\''){
                 	//lex.token += (char) c;
@@ -86,7 +117,7 @@ public class LexicalAnalysis implements AutoCloseable {
                     lex.type = TokenType.END_OF_FILE;
                     state = 15;
                 } else {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     lex.type = TokenType.INVALID_TOKEN;
                     state = 15;
                 }
@@ -96,10 +127,10 @@ public class LexicalAnalysis implements AutoCloseable {
                 if(c == '/') {
                 	state = 3;
                 } else if(c == '=') {
-                	lex.token += "/=";
+                	token.append("/=");
                 	state = 14;
                 } else {
-                	lex.token = "/";
+                	token.append('/');
                 	ungetc(c);
                 	state = 14;
                 }
@@ -119,10 +150,10 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 4:
                 if(c == '=') {
-                	lex.token += (char) c;
+                	token.append((char) c);
                     state = 14;
                 }else if(c == '*') {
-                	lex.token += (char) c;
+                	token.append((char) c);
                     state = 5;
                 }else {
                 	ungetc(c);
@@ -132,7 +163,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 5:
                 if(c == '=') {
-                	lex.token += (char) c;
+                	token.append((char) c);
                     state = 14;
                 }else {
                 	ungetc(c);
@@ -142,7 +173,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 6:
                 if (c == '=' || c == '>') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 14;
                 } else {
                     ungetc(c);
@@ -152,7 +183,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 7:
                 if (c == '=') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 14;
                 } else if (c == 'i') {
                     state = 8;
@@ -164,7 +195,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 8:
                 if (c == 'n') {
-                    lex.token += "in";
+                    token.append("in");
                     state = 14;
                 } else {
                     ungetc(c);
@@ -175,7 +206,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 9:
                 if (c == '&') {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 14;
                 } else {
                     lex.type = TokenType.INVALID_TOKEN;
@@ -185,7 +216,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 10:
                 if(c == '|') {
-                	lex.token += (char) c;
+                	token.append((char) c);
                     state = 14;
                 }else {
                 	lex.type = TokenType.INVALID_TOKEN;
@@ -196,7 +227,7 @@ public class LexicalAnalysis implements AutoCloseable {
             case 11:
                 if (c == '$' || c == '_' ||
                         Character.isLetter(c) || Character.isDigit(c)) {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 11;
                 } else {
                     ungetc(c);
@@ -206,7 +237,7 @@ public class LexicalAnalysis implements AutoCloseable {
                 break;
             case 12:
                 if (Character.isDigit(c)) {
-                    lex.token += (char) c;
+                    token.append((char) c);
                     state = 12;
                 } else {
                     ungetc(c);
@@ -226,7 +257,7 @@ public class LexicalAnalysis implements AutoCloseable {
                     state = 15;
                 }
                 else{
-                	lex.token += (char) c;
+                	token.append((char) c);
                 	state = 13;
                 }
                 
@@ -236,27 +267,25 @@ public class LexicalAnalysis implements AutoCloseable {
         }
     }
 
-        if (state == 14)
+        if (state == 14) {
+            lex.token = st.intern(token);
             lex.type = st.find(lex.token);
+        } else if (token.length() > 0) {
+            lex.token = token.toString();
+        }
+        lex.line = line;
 
         return lex;
     }
 
     private int getc() {
-        try {
-            return input.read();
-        } catch (Exception e) {
-            throw new LexicalException("Unable to read file");
-        }
+        return pos < length ? input.get(pos++) & 0xff : -1;
     }
 
+    // Characters are always pushed back in the reverse order they were
+    // read, so stepping the cursor back restores them.
     private void ungetc(int c) {
-        if (c != -1) {
-            try {
-                input.unread(c);
-            } catch (Exception e) {
-                throw new LexicalException("Unable to ungetc");
-            }
-        }
+        if (c != -1)
+            pos--;
     }
 }
@@ -2,6 +2,8 @@ package lexical;
 
 public class LexicalException extends RuntimeException {
 
+    private static final long serialVersionUID = 1L;
+
     public LexicalException(String msg) {
         super(msg);
     }
@@ -6,6 +6,8 @@ import java.util.Map;
 public class SymbolTable {
 
     private Map<String, TokenType> st;
+    private String[] names;
+    private int count;
 
     public SymbolTable() {
         st = new HashMap<String, TokenType>();
@@ -73,6 +75,55 @@ public class SymbolTable {
         st.put("switch", TokenType.SWITCH);
         st.put("case", TokenType.CASE);
         st.put("default", TokenType.DEFAULT);
+
+        names = new String[256];
+        count = 0;
+        for (String token : st.keySet())
+            intern(token);
+    }
+
+    // Returns the canonical String for token, so every occurrence of a name
+    // or keyword shares one instance. Lookup hashes the characters
+    // directly, so a known name costs no allocation.
+    public String intern(CharSequence token) {
+        int mask = names.length - 1;
+        for (int i = hash(token) & mask; ; i = (i + 1) & mask) {
+            String name = names[i];
+            if (name == null) {
+                name = token.toString();
+                names[i] = name;
+                if (++count * 2 > names.length)
+                    rehash();
+
+                return name;
+            }
+
+            if (name.contentEquals(token))
+                return name;
+        }
+    }
+
+    private void rehash() {
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name != null) {
+                int i = hash(name) & mask;
+                while (names[i] != null)
+                    i = (i + 1) & mask;
+
+                names[i] = name;
+            }
+        }
+    }
+
+    private static int hash(CharSequence token) {
+        int h = 0;
+        for (int i = 0; i < token.length(); i++)
+            h = 31 * h + token.charAt(i);
+
+        return h ^ (h >>> 16);
     }
 
     public boolean contains(String token) {
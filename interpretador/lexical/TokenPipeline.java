@@ -0,0 +1,94 @@
+package lexical;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Runs a LexicalAnalysis on its own thread, handing tokens over in chunks
+// through a bounded ring buffer so the lexer stays at most a few chunks
+// ahead of the parser. Once END_OF_FILE is reached it is returned for
+// every later request, as LexicalAnalysis does.
+public class TokenPipeline implements AutoCloseable {
+
+    private static final int CHUNK = 256;
+    private static final int CHUNKS = 8;
+
+    private BlockingQueue<Lexeme[]> ring;
+    private Thread thread;
+    private volatile RuntimeException error;
+    private Lexeme[] chunk;
+    private int index;
+    private Lexeme last;
+
+    public TokenPipeline(LexicalAnalysis lex) {
+        ring = new ArrayBlockingQueue<Lexeme[]>(CHUNKS);
+        thread = new Thread(() -> produce(lex), "lexer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Lexeme nextToken() {
+        if (last != null)
+            return last;
+
+        if (chunk == null || index == chunk.length) {
+            try {
+                chunk = ring.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LexicalException("Interrupted while reading tokens");
+            }
+
+            index = 0;
+            if (chunk.length == 0)
+                throw error;
+        }
+
+        Lexeme lex = chunk[index++];
+        if (isLast(lex))
+            last = lex;
+
+        return lex;
+    }
+
+    public void close() {
+        thread.interrupt();
+    }
+
+    private void produce(LexicalAnalysis lex) {
+        Lexeme[] buffer = new Lexeme[CHUNK];
+        int count = 0;
+        try {
+            try {
+                Lexeme token;
+                do {
+                    token = lex.nextToken();
+                    buffer[count++] = token;
+                    if (count == CHUNK) {
+                        ring.put(buffer);
+                        buffer = new Lexeme[CHUNK];
+                        count = 0;
+                    }
+                } while (!isLast(token));
+
+                if (count > 0)
+                    ring.put(Arrays.copyOf(buffer, count));
+            } catch (RuntimeException e) {
+                // An empty chunk tells the parser to rethrow the error.
+                error = e;
+                if (count > 0)
+                    ring.put(Arrays.copyOf(buffer, count));
+
+                ring.put(new Lexeme[0]);
+            }
+        } catch (InterruptedException e) {
+            // Closed by the parser.
+        }
+    }
+
+    private static boolean isLast(Lexeme lex) {
+        return lex.type == TokenType.END_OF_FILE ||
+               lex.type == TokenType.UNEXPECTED_EOF;
+    }
+
+}
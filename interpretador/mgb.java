@@ -0,0 +1,12 @@
+import batch.Batch;
+
+// Runs a batch of scripts in one JVM, in parallel; see batch.Batch.
+public class mgb {
+
+    public static void main(String[] args) {
+        int status = Batch.main(args, System.out, System.err);
+        if (status != 0)
+            System.exit(status);
+    }
+
+}
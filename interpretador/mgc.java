@@ -0,0 +1,99 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+import daemon.Protocol;
+import interpreter.util.PrivateDirectory;
+
+// Thin client for a server started with mgi --server: sends the arguments,
+// copies the script's output back, supplies standard input when the script
+// reads and exits with the script's status. Takes the same arguments as
+// mgi; the socket is set with -Dmgi.socket.
+public class mgc {
+
+    public static void main(String[] args) throws IOException {
+        String socket = System.getProperty("mgi.socket", Protocol.defaultSocket());
+        // Anyone who can write the directory could have bound the socket.
+        Path dir = Path.of(socket).toAbsolutePath().getParent();
+        if (!PrivateDirectory.isPrivate(dir)) {
+            System.err.println("Unable to connect to " + socket + ": " + dir +
+                " is missing or others can write it");
+            System.exit(2);
+            return;
+        }
+
+        SocketChannel ch;
+        try {
+            ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+            ch.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            System.err.println("Unable to connect to " + socket + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        // The script path is resolved here, since the server has its own
+        // working directory.
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(request);
+        dos.writeInt(args.length);
+        for (int i = 0; i < args.length; i++) {
+            boolean file = i == args.length - 1 && !args[i].startsWith("--");
+            dos.writeUTF(file ? Path.of(args[i]).toAbsolutePath().toString() : args[i]);
+        }
+        writeFully(ch, ByteBuffer.wrap(request.toByteArray()));
+
+        ByteBuffer head = ByteBuffer.allocate(5);
+        byte[] data = new byte[8192];
+        while (true) {
+            head.clear();
+            readFully(ch, head);
+            head.flip();
+            int type = head.get();
+            int n = head.getInt();
+            if (type == Protocol.EXIT) {
+                System.out.flush();
+                System.exit(n);
+            } else if (type == Protocol.READ) {
+                int count = System.in.read(data, 0, Math.min(n, data.length));
+                ByteBuffer reply = ByteBuffer.allocate(4 + Math.max(count, 0));
+                reply.putInt(count);
+                if (count > 0)
+                    reply.put(data, 0, count);
+                reply.flip();
+                writeFully(ch, reply);
+                continue;
+            }
+
+            PrintStream out = type == Protocol.STDERR ? System.err : System.out;
+            while (n > 0) {
+                ByteBuffer chunk = ByteBuffer.wrap(data, 0, Math.min(n, data.length));
+                readFully(ch, chunk);
+                out.write(data, 0, chunk.position());
+                n -= chunk.position();
+            }
+            out.flush();
+        }
+    }
+
+    private static void readFully(SocketChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) {
+                System.err.println("Connection to the mgi server was lost");
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining())
+            ch.write(buf);
+    }
+
+}
@@ -1,40 +1,42 @@
-import interpreter.command.Command;
-import lexical.Lexeme;
-import lexical.LexicalAnalysis;
-import lexical.TokenType;
-import syntatic.SyntaticAnalysis;
-
-public class mgi {
-
-    public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java mgi [miniGroovy file]");
-            return;
-        }
-
-        try (LexicalAnalysis l = new LexicalAnalysis(args[0])) {
-            
-            // O código a seguir é dado para testar o interpretador.
-            // TODO: descomentar depois que o analisador léxico estiver OK.
-            SyntaticAnalysis s = new SyntaticAnalysis(l);
-            Command c = s.start();
-            c.execute();
-            
-
-            // O código a seguir é usado apenas para testar o analisador léxico.
-            // TODO: depois de pronto, comentar o código abaixo.
-            /*Lexeme lex;
-            do {
-                lex = l.nextToken();
-                System.out.printf("%02d: (\"%s\", %s)\n", l.getLine(),
-                    lex.token, lex.type);
-            } while (lex.type != TokenType.END_OF_FILE &&
-                     lex.type != TokenType.INVALID_TOKEN &&
-                     lex.type != TokenType.UNEXPECTED_EOF);
-            */
-        } catch (Exception e) {
-            System.err.println("Internal error: " + e.getMessage());
-        }
-    }
-
-}
+import daemon.Protocol;
+import daemon.Server;
+import interpreter.Interpreter;
+import lexical.Lexeme;
+import lexical.LexicalAnalysis;
+import lexical.TokenType;
+
+public class mgi {
+
+    public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--server")) {
+            if (args.length > 2) {
+                System.out.println(Interpreter.USAGE);
+                System.out.println("       java mgi --server [socket]");
+                return;
+            }
+
+            Server.serve(args.length == 2 ? args[1] : Protocol.defaultSocket());
+            return;
+        }
+
+        int status = new Interpreter(System.in, System.out, System.err).run(args);
+
+        // O código a seguir é usado apenas para testar o analisador léxico.
+        // TODO: depois de pronto, comentar o código abaixo.
+        /*try (LexicalAnalysis l = new LexicalAnalysis(args[args.length - 1])) {
+            Lexeme lex;
+            do {
+                lex = l.nextToken();
+                System.out.printf("%02d: (\"%s\", %s)\n", l.getLine(),
+                    lex.token, lex.type);
+            } while (lex.type != TokenType.END_OF_FILE &&
+                     lex.type != TokenType.INVALID_TOKEN &&
+                     lex.type != TokenType.UNEXPECTED_EOF);
+        }
+        */
+
+        if (status != 0)
+            System.exit(status);
+    }
+
+}
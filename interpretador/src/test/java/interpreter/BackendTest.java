@@ -0,0 +1,128 @@
+package interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import interpreter.Interpreter.Backend;
+import interpreter.util.InterpreterException;
+import interpreter.util.ScriptCache;
+import interpreter.util.Utils;
+
+// Every sample script must print the same thing on every back end and with
+// every option as on the tree-walker, whose output is kept in name.out.
+// --eager changes what && and || evaluate, so eager runs are compared
+// with each other. Persistent maps iterate in trie order, so with
+// -Dinterpreter.value.persistent=true only the back ends are compared.
+class BackendTest {
+
+    private static final boolean PERSISTENT = Boolean.getBoolean("interpreter.value.persistent");
+
+    static List<String> names() {
+        return Scripts.names();
+    }
+
+    @ParameterizedTest
+    @MethodSource("names")
+    void tree(String name) {
+        assumeFalse(PERSISTENT);
+        assertEquals(Scripts.expected(name), runTree(name).out);
+    }
+
+    @ParameterizedTest
+    @MethodSource("names")
+    void vm(String name) {
+        assertSame(name, Backend.VM, false);
+    }
+
+    @ParameterizedTest
+    @MethodSource("names")
+    void bytecode(String name) {
+        assertSame(name, Backend.BYTECODE, false);
+    }
+
+    @ParameterizedTest
+    @MethodSource("names")
+    void pipeline(String name) {
+        assertSame(name, Backend.TREE, true);
+        assertSame(name, Backend.VM, true);
+        assertSame(name, Backend.BYTECODE, true);
+    }
+
+    @ParameterizedTest
+    @MethodSource("names")
+    void eager(String name) {
+        Scripts.Run tree = Scripts.run(Backend.TREE, false, true, Scripts.script(name), Scripts.input(name));
+        for (Backend backend : new Backend[] { Backend.VM, Backend.BYTECODE }) {
+            Scripts.Run run = Scripts.run(backend, false, true, Scripts.script(name), Scripts.input(name));
+            assertEquals(tree.out, run.out, backend.toString());
+            assertEquals(tree.status, run.status, backend.toString());
+        }
+    }
+
+    // The first run parses and stores the tree, the second decodes it.
+    @ParameterizedTest
+    @MethodSource("names")
+    void cache(String name, @TempDir Path dir) {
+        Scripts.Run tree = runTree(name);
+        ScriptCache cache = new ScriptCache(dir);
+        for (int i = 0; i < 2; i++) {
+            for (Backend backend : Backend.values()) {
+                Scripts.Run run = Scripts.run(cache, backend, false, false,
+                    Scripts.script(name), Scripts.input(name));
+                assertEquals(tree.out, run.out, backend.toString());
+                assertEquals(tree.status, run.status, backend.toString());
+            }
+        }
+    }
+
+    // A base that is neither an array nor a map aborts before its index is
+    // evaluated, so the read() in it neither prompts nor takes input.
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void indexNotEvaluatedOnInvalidBase(Backend backend, @TempDir Path dir) {
+        String message = assertThrows(InterpreterException.class, () -> Utils.abort(2)).getMessage();
+        String[] sources = {
+            "def c = 0\nprintln(c[read('idx? ')])\n",
+            "def c = 'text'\nc[read('idx? ')] = 1\n",
+            "def c = false\nc[read('idx? ')] += 1\n",
+            "def c = 0\nprintln(c[c[read('idx? ')]])\n",
+        };
+        for (String source : sources) {
+            Scripts.Run run = Scripts.run(backend, false, false, Scripts.write(dir, source), "5\n");
+            assertEquals("02: " + message + "\n", run.out, source);
+            assertEquals(1, run.status, source);
+            assertEquals(2, run.unread, source);
+        }
+    }
+
+    // foreach evaluates its array once.
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    void foreachEvaluatesOnce(Backend backend, @TempDir Path dir) {
+        Path file = Scripts.write(dir, "foreach (def x in [read('n? ')]) println(x)\n");
+        Scripts.Run run = Scripts.run(backend, false, false, file, "7\n8\n");
+        assertEquals("n? 7\n", run.out);
+    }
+
+    private static void assertSame(String name, Backend backend, boolean pipeline) {
+        Scripts.Run tree = runTree(name);
+        Scripts.Run run = Scripts.run(backend, pipeline, false, Scripts.script(name), Scripts.input(name));
+        String what = backend + (pipeline ? " --pipeline" : "");
+        assertEquals(tree.out, run.out, what);
+        assertEquals(tree.status, run.status, what);
+    }
+
+    private static Scripts.Run runTree(String name) {
+        return Scripts.run(Backend.TREE, false, false, Scripts.script(name), Scripts.input(name));
+    }
+
+}
@@ -0,0 +1,120 @@
+package interpreter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import interpreter.command.Command;
+import interpreter.util.ScriptCache;
+import lexical.LexicalAnalysis;
+import syntatic.SyntaticAnalysis;
+
+// Helpers shared by the tests: the sample scripts in resources/scripts and
+// a way to run one through an Interpreter and capture what it prints.
+public final class Scripts {
+
+    private Scripts() {
+    }
+
+    // What a run printed, script errors included, and its exit status.
+    public static final class Run {
+        public final String out;
+        public final int status;
+        // Bytes of the input read() never took from the stream.
+        public final int unread;
+
+        Run(String out, int status, int unread) {
+            this.out = out;
+            this.status = status;
+            this.unread = unread;
+        }
+    }
+
+    public static Path dir() {
+        try {
+            return Path.of(Scripts.class.getResource("/scripts").toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The names of the sample scripts, without .mg.
+    public static List<String> names() {
+        try (Stream<Path> files = Files.list(dir())) {
+            return files.map(p -> p.getFileName().toString())
+                        .filter(n -> n.endsWith(".mg"))
+                        .map(n -> n.substring(0, n.length() - 3))
+                        .sorted()
+                        .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Path script(String name) {
+        return dir().resolve(name + ".mg");
+    }
+
+    // The lines read() takes, from name.in, or none.
+    public static String input(String name) {
+        return read(dir().resolve(name + ".in"), "");
+    }
+
+    // What the tree-walker prints for the script, from name.out.
+    public static String expected(String name) {
+        return read(dir().resolve(name + ".out"), null);
+    }
+
+    public static Run run(Interpreter.Backend backend, boolean pipeline, boolean eager,
+            Path file, String input) {
+        return run(null, backend, pipeline, eager, file, input);
+    }
+
+    // Runs file through a new Interpreter using cache, which may be null.
+    public static Run run(ScriptCache cache, Interpreter.Backend backend,
+            boolean pipeline, boolean eager, Path file, String input) {
+        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        Interpreter interpreter = new Interpreter(in, out, out);
+        interpreter.setCache(cache);
+        int status = interpreter.run(file.toString(), backend, pipeline, eager);
+        return new Run(bytes.toString(StandardCharsets.UTF_8), status, in.available());
+    }
+
+    // Writes source to a file in dir and returns its path.
+    public static Path write(Path dir, String source) {
+        try {
+            Path file = Files.createTempFile(dir, "script", ".mg");
+            Files.writeString(file, source);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Parses source without optimizing it.
+    public static Command parse(String source) {
+        try (LexicalAnalysis lex = new LexicalAnalysis(source.getBytes(StandardCharsets.UTF_8))) {
+            return new SyntaticAnalysis(lex).start();
+        }
+    }
+
+    private static String read(Path file, String missing) {
+        try {
+            return Files.exists(file) ? Files.readString(file) : missing;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
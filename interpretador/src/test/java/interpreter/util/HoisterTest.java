@@ -0,0 +1,67 @@
+package interpreter.util;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import interpreter.Scripts;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.ForCommand;
+import interpreter.command.WhileCommand;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.InvariantExpr;
+import interpreter.expr.UnaryExpr;
+
+// What Hoister moves out of loops. That hoisted loops still print the same
+// is checked by BackendTest on invariants.mg.
+class HoisterTest {
+
+    @Test
+    void hoistsInvariantCondition() {
+        Expr right = condition("def m = [a: 1]\ndef i = 0\nwhile (i < size(keys(m))) i += 1\n");
+        assertInstanceOf(InvariantExpr.class, right);
+    }
+
+    @Test
+    void hoistsFromForLoop() {
+        Command c = Scripts.parse("def n = 3\nfor (def i = 0; i < n * 2; i += 1) println(i)\n");
+        Hoister.hoist(c);
+        List<Command> cmds = ((BlocksCommand) c).getCommands();
+        ForCommand fc = (ForCommand) cmds.get(cmds.size() - 1);
+        assertInstanceOf(InvariantExpr.class, ((BinaryExpr) fc.getCond()).getRight());
+    }
+
+    @Test
+    void keepsWrittenVariables() {
+        Expr right = condition("def n = 3\ndef i = 0\nwhile (i < n * 2) { n += 1 i += 1 }\n");
+        assertInstanceOf(BinaryExpr.class, right);
+    }
+
+    // An element store may change any array or map through an alias.
+    @Test
+    void keepsReadsWhenElementsAreWritten() {
+        Expr right = condition("def a = [1]\ndef n = 3\ndef i = 0\nwhile (i < n * 2) { a[0] = i i += 1 }\n");
+        assertInstanceOf(BinaryExpr.class, right);
+    }
+
+    @Test
+    void keepsRead() {
+        Expr right = condition("def i = 0\nwhile (i < size(read('x'))) i += 1\n");
+        assertInstanceOf(UnaryExpr.class, right);
+    }
+
+    // The right operand of the condition of the last loop in source, after
+    // hoisting.
+    private static Expr condition(String source) {
+        Command c = Scripts.parse(source);
+        Hoister.hoist(c);
+        List<Command> cmds = ((BlocksCommand) c).getCommands();
+        WhileCommand wc = (WhileCommand) cmds.get(cmds.size() - 1);
+        return ((BinaryExpr) wc.getExpr()).getRight();
+    }
+
+}
@@ -0,0 +1,93 @@
+package interpreter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import interpreter.Scripts;
+import interpreter.command.BlocksCommand;
+import interpreter.command.Command;
+import interpreter.command.PrintCommand;
+import interpreter.expr.BinaryExpr;
+import interpreter.expr.ConstExpr;
+import interpreter.expr.Expr;
+import interpreter.expr.UnaryExpr;
+import interpreter.value.BooleanValue;
+import interpreter.value.NumberValue;
+import interpreter.value.TextValue;
+
+class OptimizerTest {
+
+    @Test
+    void foldsArithmetic() {
+        assertConst(NumberValue.of(4096), "2 ** 10 * 4");
+        assertConst(NumberValue.of(4), "10 / 3 + 7 % 3");
+        assertConst(NumberValue.of(2), "-(3 - 5) % 4");
+    }
+
+    @Test
+    void foldsTextAndComparisons() {
+        assertConst(new TextValue("ab12"), "'a' + 'b' + 1 + 2");
+        assertConst(new TextValue("3c"), "1 + 2 + 'c'");
+        assertConst(BooleanValue.of(true), "3 < 4 && 'q' == 'q'");
+        assertConst(NumberValue.of(13), "('12' as Integer) + 1");
+    }
+
+    @Test
+    void dropsIdentities() {
+        Expr e = optimize("(x - 1) * 1 + 0");
+        assertInstanceOf(BinaryExpr.class, e);
+        assertEquals(BinaryExpr.Op.SubOp, ((BinaryExpr) e).getOp());
+        assertInstanceOf(UnaryExpr.class, optimize("size(s) * 1"));
+        assertInstanceOf(UnaryExpr.class, optimize("0 + -x"));
+    }
+
+    // x may not be a number, so x * 1 and s + 0 can still abort or
+    // concatenate.
+    @Test
+    void keepsIdentitiesOnUnknownOperands() {
+        assertInstanceOf(BinaryExpr.class, optimize("x * 1"));
+        assertInstanceOf(BinaryExpr.class, optimize("s + 0"));
+    }
+
+    // Operations that abort are left for run time, at their own line.
+    @Test
+    void keepsOperationsThatFail() {
+        assertInstanceOf(BinaryExpr.class, optimize("x / 0"));
+        assertInstanceOf(BinaryExpr.class, optimize("1 % 0"));
+        assertInstanceOf(BinaryExpr.class, optimize("'a' - 1"));
+        assertInstanceOf(UnaryExpr.class, optimize("-'a'"));
+    }
+
+    // Eager and short-circuit evaluation disagree on null || true, and
+    // --eager is chosen per run.
+    @Test
+    void foldsLogicOnlyOnBooleans() {
+        assertConst(BooleanValue.of(true), "!true || !null");
+        assertInstanceOf(BinaryExpr.class, optimize("null || true"));
+    }
+
+    @Test
+    void foldsCasts() {
+        assertConst(NumberValue.of(1), "true as Integer");
+        assertInstanceOf(ConstExpr.class, optimize("'abc' as Integer"));
+    }
+
+    private static void assertConst(Object expected, String expr) {
+        ConstExpr c = assertInstanceOf(ConstExpr.class, optimize(expr), expr);
+        assertEquals(expected, c.getValue(), expr);
+    }
+
+    // The optimized expression of println(expr), after x and s are
+    // declared.
+    private static Expr optimize(String expr) {
+        Command c = Scripts.parse("def x = 5, s = 'v'\nprintln(" + expr + ")\n");
+        Optimizer.optimize(c);
+        List<Command> cmds = ((BlocksCommand) c).getCommands();
+        return ((PrintCommand) cmds.get(cmds.size() - 1)).getExpr();
+    }
+
+}
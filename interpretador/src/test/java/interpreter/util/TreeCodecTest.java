@@ -0,0 +1,111 @@
+package interpreter.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import interpreter.Scripts;
+import interpreter.command.Command;
+
+// Running decoded trees is checked by BackendTest.cache.
+class TreeCodecTest {
+
+    static List<String> names() {
+        return Scripts.names();
+    }
+
+    // A decoded tree encodes to the same bytes.
+    @ParameterizedTest
+    @MethodSource("names")
+    void roundTrip(String name) throws IOException {
+        Command c = Scripts.parse(Files.readString(Scripts.script(name)));
+        Optimizer.optimize(c);
+        byte[] data = TreeCodec.encode(c);
+        assertArrayEquals(data, TreeCodec.encode(TreeCodec.decode(data)));
+    }
+
+    @Test
+    void rejectsOtherData() {
+        byte[] data = TreeCodec.encode(Scripts.parse("println(1)\n"));
+        assertThrows(IOException.class, () -> TreeCodec.decode(new byte[] { 1, 2, 3 }));
+        assertThrows(IOException.class, () -> TreeCodec.decode(Arrays.copyOf(data, data.length - 1)));
+    }
+
+    @Test
+    void cacheReturnsFreshTrees(@TempDir Path dir) {
+        ScriptCache cache = new ScriptCache(dir);
+        String key = ScriptCache.key("println(1)\n".getBytes());
+        assertNull(cache.get(key));
+
+        Command c = Scripts.parse("println(1)\n");
+        cache.put(key, c);
+        Command first = cache.get(key);
+        Command second = cache.get(key);
+        assertNotNull(first);
+        assertNotSame(c, first);
+        assertNotSame(first, second);
+        assertArrayEquals(TreeCodec.encode(c), TreeCodec.encode(first));
+    }
+
+    // A separate mgi run finds the entry in the directory.
+    @Test
+    void cacheReadsDirectory(@TempDir Path dir) {
+        String key = ScriptCache.key("println(2)\n".getBytes());
+        Command c = Scripts.parse("println(2)\n");
+        new ScriptCache(dir).put(key, c);
+
+        Command read = new ScriptCache(dir).get(key);
+        assertNotNull(read);
+        assertArrayEquals(TreeCodec.encode(c), TreeCodec.encode(read));
+    }
+
+    @Test
+    void corruptEntryIsMiss(@TempDir Path dir) throws IOException {
+        String key = ScriptCache.key("println(3)\n".getBytes());
+        new ScriptCache(dir).put(key, Scripts.parse("println(3)\n"));
+        Files.write(dir.resolve(key + ".ast"), new byte[] { 0, 1, 2 });
+
+        assertNull(new ScriptCache(dir).get(key));
+    }
+
+    // A missing directory is created readable only by this user.
+    @Test
+    void cacheCreatesPrivateDirectory(@TempDir Path dir) throws IOException {
+        Path sub = dir.resolve("cache");
+        new ScriptCache(sub).put(ScriptCache.key("println(4)\n".getBytes()), Scripts.parse("println(4)\n"));
+        assertTrue(PrivateDirectory.isPrivate(sub));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(sub)));
+    }
+
+    // Another user could have planted entries in a directory others can
+    // write, so it is neither read nor written.
+    @Test
+    void cacheIgnoresSharedDirectory(@TempDir Path dir) throws IOException {
+        String key = ScriptCache.key("println(5)\n".getBytes());
+        new ScriptCache(dir).put(key, Scripts.parse("println(5)\n"));
+        Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        assertNull(new ScriptCache(dir).get(key));
+        String other = ScriptCache.key("println(6)\n".getBytes());
+        new ScriptCache(dir).put(other, Scripts.parse("println(6)\n"));
+        assertFalse(Files.exists(dir.resolve(other + ".ast")));
+    }
+
+}
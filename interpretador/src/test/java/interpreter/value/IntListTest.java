@@ -0,0 +1,92 @@
+package interpreter.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntListTest {
+
+    @Test
+    void keepsNumbersUnboxed() {
+        IntList list = new IntList();
+        for (int i = 0; i < 100; i++)
+            list.add(NumberValue.of(i * i));
+        list.add(0, NumberValue.of(-1));
+        list.set(5, NumberValue.of(7));
+
+        assertTrue(list.isInts());
+        assertEquals(101, list.size());
+        assertEquals(-1, list.intAt(0));
+        assertEquals(7, list.intAt(5));
+        assertEquals(NumberValue.of(81), list.get(10));
+        assertEquals(10, list.indexOf(NumberValue.of(81)));
+        assertEquals(-1, list.indexOf(new TextValue("81")));
+    }
+
+    @Test
+    void movesToValuesOnOtherElements() {
+        IntList list = new IntList();
+        list.add(NumberValue.of(1));
+        list.add(NumberValue.of(2));
+        list.add(1, new TextValue("a"));
+
+        assertFalse(list.isInts());
+        assertEquals(List.of(NumberValue.of(1), new TextValue("a"), NumberValue.of(2)), list);
+    }
+
+    @Test
+    void checksBounds() {
+        IntList list = new IntList();
+        list.add(NumberValue.of(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.intAt(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(2, NumberValue.of(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.set(1, NumberValue.of(0)));
+    }
+
+    // Random appends, inserts and sets behave as on an ArrayList, and a
+    // copy does not see later changes.
+    @Test
+    void behavesLikeArrayList() {
+        Random random = new Random(1);
+        for (int round = 0; round < 100; round++) {
+            List<Value<?>> expected = new ArrayList<Value<?>>();
+            IntList list = new IntList();
+            IntList copy = null;
+            List<Value<?>> copied = null;
+            int n = random.nextInt(2000);
+            for (int k = 0; k < n; k++) {
+                Value<?> v = random.nextInt(50) == 0 ? new TextValue("t" + k) : NumberValue.of(random.nextInt(100));
+                int op = random.nextInt(10);
+                if (op < 5 || expected.isEmpty()) {
+                    expected.add(v);
+                    list.add(v);
+                } else if (op < 8) {
+                    int i = random.nextInt(expected.size() + 1);
+                    expected.add(i, v);
+                    list.add(i, v);
+                } else {
+                    int i = random.nextInt(expected.size());
+                    assertEquals(expected.set(i, v), list.set(i, v));
+                }
+
+                if (k == n / 2) {
+                    copy = list.copy();
+                    copied = new ArrayList<Value<?>>(expected);
+                }
+            }
+
+            assertEquals(expected, list);
+            if (copy != null)
+                assertEquals(copied, copy);
+        }
+    }
+
+}
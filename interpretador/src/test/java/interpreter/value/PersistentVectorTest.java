@@ -0,0 +1,93 @@
+package interpreter.value;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PersistentVectorTest {
+
+    // Past 32 * 32 + 32 elements the trie grows a level.
+    @Test
+    void growsTrie() {
+        PersistentVector v = new PersistentVector();
+        for (int i = 0; i < 5000; i++)
+            v.add(NumberValue.of(i));
+
+        assertEquals(5000, v.size());
+        for (int i = 0; i < 5000; i++)
+            assertEquals(NumberValue.of(i), v.get(i));
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        PersistentVector v = new PersistentVector();
+        for (int i = 0; i < 100; i++)
+            v.add(NumberValue.of(i));
+
+        PersistentVector copy = v.copy();
+        v.set(3, new TextValue("a"));
+        v.add(0, NumberValue.of(-1));
+        copy.set(50, new TextValue("b"));
+        copy.add(NumberValue.of(100));
+
+        assertEquals(NumberValue.of(3), copy.get(3));
+        assertEquals(NumberValue.of(49), v.get(50));
+        assertEquals(new TextValue("a"), v.get(4));
+        assertEquals(new TextValue("b"), copy.get(50));
+        assertEquals(101, v.size());
+        assertEquals(101, copy.size());
+    }
+
+    @Test
+    void checksBounds() {
+        PersistentVector v = new PersistentVector();
+        v.add(NumberValue.of(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> v.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> v.add(-1, NumberValue.of(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> v.add(2, NumberValue.of(0)));
+        assertThrows(IndexOutOfBoundsException.class, () -> v.set(1, NumberValue.of(0)));
+    }
+
+    // Random appends, inserts and sets behave as on an ArrayList, and
+    // every copy keeps the elements it had.
+    @Test
+    void behavesLikeArrayList() {
+        Random random = new Random(1);
+        for (int round = 0; round < 100; round++) {
+            List<Value<?>> expected = new ArrayList<Value<?>>();
+            PersistentVector v = new PersistentVector();
+            List<PersistentVector> copies = new ArrayList<PersistentVector>();
+            List<List<Value<?>>> copied = new ArrayList<List<Value<?>>>();
+            int n = random.nextInt(3000);
+            for (int k = 0; k < n; k++) {
+                Value<?> value = NumberValue.of(random.nextInt(100));
+                int op = random.nextInt(10);
+                if (op < 5 || expected.isEmpty()) {
+                    expected.add(value);
+                    v.add(value);
+                } else if (op < 8) {
+                    int i = random.nextInt(expected.size() + 1);
+                    expected.add(i, value);
+                    v.add(i, value);
+                } else {
+                    int i = random.nextInt(expected.size());
+                    assertEquals(expected.set(i, value), v.set(i, value));
+                }
+
+                if (random.nextInt(200) == 0) {
+                    copies.add(v.copy());
+                    copied.add(new ArrayList<Value<?>>(expected));
+                }
+            }
+
+            assertEquals(expected, v);
+            assertEquals(copied, copies);
+        }
+    }
+
+}
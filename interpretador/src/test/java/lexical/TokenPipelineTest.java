@@ -0,0 +1,60 @@
+package lexical;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class TokenPipelineTest {
+
+    // Longer than several chunks, so the ring buffer fills and drains.
+    @Test
+    void yieldsSameTokens() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            sb.append("def x").append(i).append(" = [").append(i).append(", 'a'] + ").append(i).append('\n');
+        assertSameTokens(sb.toString());
+    }
+
+    @Test
+    void yieldsSameTokensUntilError() {
+        assertSameTokens("def x = 1\nprintln(\"x\")\n");
+        assertSameTokens("def x = 'unterminated\n");
+    }
+
+    @Test
+    void repeatsEndOfFile() {
+        try (TokenPipeline p = new TokenPipeline(lexer("println(1)"))) {
+            Lexeme lex;
+            do {
+                lex = p.nextToken();
+            } while (lex.type != TokenType.END_OF_FILE);
+
+            assertSame(lex, p.nextToken());
+            assertSame(lex, p.nextToken());
+        }
+    }
+
+    private static void assertSameTokens(String source) {
+        LexicalAnalysis direct = lexer(source);
+        try (TokenPipeline p = new TokenPipeline(lexer(source))) {
+            Lexeme expected;
+            do {
+                expected = direct.nextToken();
+                Lexeme actual = p.nextToken();
+                assertEquals(expected.type, actual.type);
+                assertEquals(expected.token, actual.token);
+                assertEquals(expected.line, actual.line);
+            } while (expected.type != TokenType.END_OF_FILE &&
+                     expected.type != TokenType.UNEXPECTED_EOF &&
+                     expected.type != TokenType.INVALID_TOKEN);
+        }
+    }
+
+    private static LexicalAnalysis lexer(String source) {
+        return new LexicalAnalysis(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,4 @@
+def x = 1
+println(x)
+x = x + 'a' - 1
+println('never')
@@ -0,0 +1,37 @@
+// one access site sees arrays then maps
+def things = [[10, 20, 30], [a: 1, b: 2], [5, 6], [c: 7]]
+def idx = [0, 'b', 1, 'c']
+def j = 0
+foreach (def t in things) {
+    def k = idx[j]
+    j += 1
+    println(t[k])
+    t[k] = 'w'
+    println(t)
+}
+foreach (def t in [[b: 1], [c: 2]]) {
+    println(t['b'])
+    t['b'] = 'v'
+    println(t)
+}
+def a = [1, 2]
+a[5] = 9
+println(a)
+println(a[-1])
+println(a[9])
+def m = [k: 1]
+def ks = ['k', 'z']
+foreach (def k in ks) {
+    m[k] = m[k]
+    println(m)
+}
+def i = 0
+def r = [0, 0, 0]
+while (i < 30) {
+    r[i % 3] = r[i % 3] + i
+    i += 1
+}
+println(r)
+foreach (def t in [[b: 1], [5, 6]]) {
+    t['b'] = 3
+}
@@ -0,0 +1,44 @@
+def a = [1, 2, 3]
+def b = a + [4, 5]
+println(b)
+println(3 in a)
+println('3' in a)
+println(9 !in b)
+a[1] = 'two'
+println(a)
+println(2 in a)
+println('two' in a)
+def c = [7]
+c[4] = 8
+println(c)
+def big = []
+def i = 0
+while (i < 40) {
+    big[i] = i * i
+    i += 1
+}
+println(big)
+println(1521 in big)
+println(1522 in big)
+println(big[39] + big[38])
+println(big[50])
+def s = 0
+foreach (def x in big) {
+    s += x
+    if (x == 100)
+        big[size(big)] = 'end'
+}
+println(s)
+println(big[40])
+def e = []
+println(e)
+println(5 in [5])
+def d = [1, 2]
+d[1] = [3]
+println(d)
+println(big[-1])
+println(big == big)
+def (p, q) = [10, 20]
+println(p + q)
+println(keys([k: 1]))
+println(values([k: 1, l: 2]))
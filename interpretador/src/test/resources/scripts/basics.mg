@@ -0,0 +1,55 @@
+def i = 0, s = 0
+while (i < 100) { s += i * 2 - 1 i += 1 }
+println('sum=' + s)
+def a = [1, 2, 'x', [3, 4]]
+println(a)
+println(a[3][1])
+a[6] = 9
+println(a)
+def m = [x: 1, y: 'two']
+m.z = [:]
+println(m.x + m.y)
+println(size(a) + 1)
+println(keys(m))
+println(values(m) as Boolean)
+println(2 ** 3 ** 2)
+println(-5 % 3)
+println(7 / 2)
+println('ab' == 'ab')
+println(1 != 2 && 3 > 2 || false)
+println(!empty(a))
+println(2 in a)
+println('q' !in m)
+println('x' in m)
+def (p, q, r) = [10, 20]
+println(p + q)
+println(r)
+def u
+println(u)
+println(null)
+foreach (def e in a) print(e + ' ')
+println('')
+for (def k = 0; k < 3; k += 1) println(switch (k) { case 0 -> 'zero' case 1 -> 'one' default -> 'many' })
+def t = 'abc' as Integer
+println(t)
+println(('12' as Integer) + 1)
+println(true as Integer)
+println(a as String)
+println(0 as Boolean)
+if (s > 100) println('big') else println('small')
+def s2 = ''
+for (def j = 0; j < 5; j += 1) s2 += j
+println(s2)
+def n = 3
+n **= 2 println(n)
+n -= 1 n *= 3 n /= 4 n %= 5 println(n)
+def arr = [1,2]
+arr += [3]
+println(arr)
+def mm = [a: 1]
+mm += [b: 2]
+println(mm)
+println([] == [])
+println(switch (3) { case 1 -> 'a' case 3 -> 'c' case 3 -> 'cc' })
+println([1] + 'x')
+println(arr == arr)
@@ -0,0 +1,15 @@
+def x = 5, s = 'v'
+println(2 ** 10 * 4)
+println('a' + 'b' + 1 + 2)
+println(1 + 2 + 'c')
+println((x - 1) * 1 + 0)
+println(s + 0)
+println(x * 1)
+println(-(3 - 5) % 4)
+println(!true || !null)
+println(10 / 3 + 7 % 3)
+println(('12' as Integer) + 1)
+println(3 < 4 && 'q' == 'q')
+println((true as Integer) + 0)
+println(x / 0 == 1)
+println('unreached')
@@ -0,0 +1,6 @@
+foreach (def x in [read('n? ')]) {
+    println(x)
+}
+foreach (def y in read('m? ')) {
+    println(y)
+}
@@ -0,0 +1,71 @@
+// invariant condition
+def m = [a: 1, b: 2, c: 3]
+def n = 0
+for (def i = 0; i < size(keys(m)); i += 1)
+    n += 1
+println(n)
+// alias writes the map inside the loop
+def alias = m
+def i = 0
+while (i < size(keys(m)) && i < 6) {
+    alias['k' + i] = i
+    i += 1
+}
+println(m)
+// map reassigned inside the loop
+i = 0
+while (i < size(m)) {
+    if (i == 0)
+        m = m + [z: 0]
+    i += 1
+}
+println(i)
+// array results are fresh each time
+def out = []
+i = 0
+while (i < 2) {
+    def ks = keys(m)
+    ks[0] = 'changed'
+    def fresh = keys(m)
+    out = out + [fresh[0]]
+    i += 1
+}
+println(out)
+// inner invariant depends on the outer variable
+def j = 0
+while (j < 3) {
+    def k = 0
+    def s = 0
+    while (k < j * 2 + 1) {
+        s += j * 10
+        k += 1
+    }
+    println(s)
+    j += 1
+}
+// short circuit keeps its guard
+def x = 'q'
+i = 0
+while (i < 2 && (x == 'q' || size(x) > 0)) {
+    i += 1
+}
+println(i)
+// never reached
+i = 0
+while (i < 0) {
+    println(size(5))
+}
+// read is not hoisted
+i = 0
+while (i < 2) {
+    println(read('x?'))
+    i += 1
+}
+// aborts on first use, after output
+def bad = 5
+i = 0
+while (i < 3) {
+    println(i)
+    println(size(bad))
+    i += 1
+}
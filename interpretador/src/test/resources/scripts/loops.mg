@@ -0,0 +1,20 @@
+def m = [k: 0]
+def keysarr = []
+for (def i = 0; i < 50; i += 1) { keysarr[i] = 'k' + i }
+def c = 0
+foreach (x in keysarr) { if (x in m) c += 1 else c -= 1 }
+println(c)
+def txt = 'r:'
+def w = 0
+while (w < 20) { txt += w + ',' w += 1 }
+println(txt)
+println(switch ('a' + 'b') { case 'ab' -> 1 + 1 case 'cd' -> 3 })
+println(switch (5) { case 1 -> 'x' })
+def z = [1, 2, 3]
+println(3 in z)
+println(4 !in z)
+def big = 2 ** 10 * 4
+println(big)
+println(big + 0)
+println(1 * big)
+println(z.length)
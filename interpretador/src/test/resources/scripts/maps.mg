@@ -0,0 +1,21 @@
+def m0 = [k: 1, l: 'v']
+println(m0 + [x: 1])
+println(keys(m0 + m0))
+println(values(m0 + m0))
+def m1 = [a: 1, b: 2, c: 3]
+def m2 = m1 + [d: 4, a: 5]
+println(m2)
+println(keys(m2))
+println(values(m2))
+def m3 = m0
+m3 += [y: 2, k: 3]
+println(m3)
+println(m0)
+println(keys(m3))
+println(values(m3))
+def big = [:]
+for (def i = 0; i < 20; i += 1) { big['k' + i] = i }
+big += [q: 0]
+println(big)
+println(keys(big + [:]))
+println(values([:] + big))
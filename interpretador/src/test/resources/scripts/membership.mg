@@ -0,0 +1,61 @@
+def a = []
+def i = -30
+while (i < 60) {
+    if (!(i * 7 % 11 in a))
+        a[size(a)] = i * 7 % 11
+    i += 1
+}
+println(a)
+println(0 in a)
+println(-9 in a)
+println(-10 in a)
+println(100 in a)
+def b = []
+i = 0
+while (i < 100) {
+    b[i] = i * 3
+    i += 1
+}
+println(0 in b)
+println(297 in b)
+println(298 in b)
+b[100] = 1000
+println(1000 in b)
+b[5] = 7
+println(7 in b)
+println(15 in b)
+b[101] = 'x'
+println('x' in b)
+println(1000 in b)
+println(7 !in b)
+def a = []
+def i = 0
+while (i < 40) {
+  a[i] = i * 2
+  i = i + 1
+}
+println(10 in a)
+println(11 in a)
+println(11 !in a)
+a[5] = 11
+println(11 in a)
+println(10 in a)
+a[60] = 'x'
+println('x' in a)
+println('null' in a)
+def n = 0
+def j = 0
+while (j < 3000) {
+  if (j in a) { n = n + 1 }
+  j = j + 1
+}
+println(n)
+def m = [k: 1, z: 2]
+println('k' in m)
+println('q' in m)
+println('q' !in m)
+def e = []
+println(1 in e)
+def b = [1, 'a', [2]]
+println('a' in b)
+println(2 in b)
@@ -0,0 +1,5 @@
+def m = [k: 1]
+m[read('key? ')] += 1
+println(m)
+def n = true
+n[read('key? ')] += 1
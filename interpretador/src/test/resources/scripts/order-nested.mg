@@ -0,0 +1,5 @@
+def c = 0
+def a = [1]
+println(c[
+    a[
+        'x']])
@@ -0,0 +1,2 @@
+def c = 0
+println(c[read('idx? ')])
@@ -0,0 +1,2 @@
+def c = 'text'
+c[read('idx? ')] = 1
@@ -0,0 +1,30 @@
+// one site sees numbers, then text, then arrays
+def xs = [1, 'a', 2, 'b', [3], 'null']
+def acc = 0
+foreach (def x in xs) {
+    def y = x + x
+    println(y)
+    println(x == 'a')
+    println(x != 'b')
+    acc += 1
+}
+def s = 'k'
+def vals = ['x', 2, 'y', 5]
+foreach (def v in vals) {
+    s += v
+    println(s)
+}
+def t = 'q'
+t += 3
+t += 'r'
+println(t)
+def m = [a: 1]
+m += [b: 2]
+println(m)
+def n = 'z'
+foreach (def v in ['a', 1, [2]]) {
+    println(n + v)
+}
+def w = 'w'
+println(w == null)
+println(w + null)
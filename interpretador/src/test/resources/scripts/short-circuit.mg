@@ -0,0 +1,21 @@
+def a = [1, 2, 3]
+def i = 0, n = 0
+while (i < 5 && a[i] != 3) { i += 1 }
+println(i)
+def x = 'q'
+println(size(a) > 5 && a[5] > 1)
+println(true || a[7] > 1)
+println(null || true)
+println(false && (x > 1))
+def c = 0
+for (def k = 0; k < 10 || c < 3; k += 1) { c += 1 if (k > 20) println('bad') }
+println(c)
+def y = true
+y = y && false
+println(y)
+def z = false
+z = z || z || true
+println(z)
+if (1 < 2 || a[9] > 0) println('or-ok')
+if (!(1 > 2) && (2 < 3 || a[10] > 1) && 3 >= 3) println('and-ok') else println('and-bad')
+println(1 < 2 && 'a' == 'a' && 3 as Boolean)
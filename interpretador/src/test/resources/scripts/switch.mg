@@ -0,0 +1,21 @@
+def n = 0
+for (def i = 0; i < 8; i += 1) {
+    def r = switch (i) {
+        case 0 -> 'zero'
+        case 1 -> 'one'
+        case 2 -> 'two'
+        case 1 -> 'uno'
+        case 'null' -> 'nil'
+        case 2 + 1 -> 'three'
+        case true -> 'yes'
+        default -> 'many'
+    }
+    print(r + ' ')
+}
+println('')
+println(switch ('true') { case true -> 'bool' default -> 'no' })
+println(switch (null as String) { case null -> 'isnull' default -> 'no' })
+println(switch (5) { case 1 -> 'a' })
+def k = 2
+println(switch (3) { case k + 1 -> 'dyn' case 2 -> 'two' default -> 'd' })
+println(switch (1) { case 1 -> read('x?') case 1 -> n })
@@ -0,0 +1,22 @@
+def s = ''
+def t = ''
+for (def i = 0; i < 200; i += 1) {
+  s += i
+  s = s + ','
+  if (i == 100) t = s
+}
+def u = t + 'X'
+def w = t + 'Y'
+println(s)
+println(u)
+println(w)
+println(t == u)
+println(t + 'X' == u)
+def m = [:]
+m[u] = 1
+println((t + 'X') in m)
+println(s + null)
+def a = ['v'] + s
+println(size(a))
+println('' as Boolean)
+println(t as Boolean)
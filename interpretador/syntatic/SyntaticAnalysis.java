@@ -2,7 +2,6 @@ package syntatic;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 import interpreter.command.AssignCommand;
 import interpreter.command.BlocksCommand;
@@ -35,77 +34,110 @@ import interpreter.value.TextValue;
 import interpreter.value.Value;
 import lexical.Lexeme;
 import lexical.LexicalAnalysis;
+import lexical.TokenPipeline;
 import lexical.TokenType;
 
 public class SyntaticAnalysis {
 
+    // How far back rollback() can go. Older tokens are dropped, so the
+    // parser holds a constant number of tokens whatever the file size.
+    private static final int WINDOW = 4;
+
     private LexicalAnalysis lex;
+    private TokenPipeline pipeline;
     private Lexeme current;
-    private Stack<Lexeme> history;
-    private Stack<Lexeme> queued;
+    private Lexeme[] history;
+    private int head;
+    private int depth;
+    private Lexeme[] queued;
+    private int pending;
+    // Line of the lexer after the last token it produced.
+    private int line;
 
     public SyntaticAnalysis(LexicalAnalysis lex) {
+        this(lex, false);
+    }
+
+    // When pipelined, lexing runs ahead on its own thread.
+    public SyntaticAnalysis(LexicalAnalysis lex, boolean pipelined) {
         this.lex = lex;
-        this.current = lex.nextToken();
-        this.history = new Stack<Lexeme>();
-        this.queued = new Stack<Lexeme>();
+        this.pipeline = pipelined ? new TokenPipeline(lex) : null;
+        this.history = new Lexeme[WINDOW];
+        this.queued = new Lexeme[WINDOW];
+        this.current = fetch();
     }
 
     public Command start() {
-    	Command cmd = procCode();
-        eat(TokenType.END_OF_FILE);
-        return cmd;
+        try {
+            Command cmd = procCode();
+            eat(TokenType.END_OF_FILE);
+            return cmd;
+        } finally {
+            if (pipeline != null)
+                pipeline.close();
+        }
+    }
+
+    private Lexeme fetch() {
+        Lexeme next = pipeline != null ? pipeline.nextToken() : lex.nextToken();
+        line = next.line;
+        return next;
     }
 
     private void rollback() {
-        assert !history.isEmpty();
+        assert depth > 0;
 
        // System.out.println("Rollback (\"" + current.token + "\", " +
         //   current.type + ")");
-        queued.push(current);
-        current = history.pop();
+        queued[pending++] = current;
+        head = (head + WINDOW - 1) % WINDOW;
+        depth--;
+        current = history[head];
+        history[head] = null;
     }
 
     private void advance() {
 //        System.out.println("Advanced (\"" + current.token + "\", " +
 //            current.type + ")");
-        history.add(current);
-        current = queued.isEmpty() ? lex.nextToken() : queued.pop();
+        history[head] = current;
+        head = (head + 1) % WINDOW;
+        if (depth < WINDOW)
+            depth++;
+
+        current = pending == 0 ? fetch() : queued[--pending];
     }
 
     private void eat(TokenType type) {
 //        System.out.println("Expected (..., " + type + "), found (\"" + 
 //            current.token + "\", " + current.type + ")");
         if (type == current.type) {
-            history.add(current);
-            current = queued.isEmpty() ? lex.nextToken() : queued.pop();
+            advance();
         } else {
             showError();
         }
     }
 
     private void showError() {
-        System.out.printf("%02d: ", lex.getLine());
-
+        String msg;
         switch (current.type) {
             case INVALID_TOKEN:
-                System.out.printf("Lexema inv�lido [%s]\n", current.token);
+                msg = String.format("Lexema inv�lido [%s]", current.token);
                 break;
             case UNEXPECTED_EOF:
             case END_OF_FILE:
-                System.out.printf("Fim de arquivo inesperado\n");
+                msg = "Fim de arquivo inesperado";
                 break;
             default:
-                System.out.printf("Lexema n�o esperado [%s]\n", current.token);
+                msg = String.format("Lexema n�o esperado [%s]", current.token);
                 break;
         }
 
-        System.exit(1);
+        throw new SyntaxException(this.line, msg);
     }
 
     // <code> ::= { <cmd> }
     private BlocksCommand procCode() {
-    	int line = lex.getLine();
+    	int line = this.line;
 
     	List<Command> cmds = new ArrayList<Command>();
     	while (current.type == TokenType.DEF ||
@@ -209,7 +241,7 @@ public class SyntaticAnalysis {
     // <decl-type1> ::= <name> [ '=' <expr> ] { ',' <name> [ '=' <expr> ] }
     private Command procDeclType1() {
     	Variable lhs = procName();
-    	int line = lex.getLine();
+    	int line = this.line;
     	
     	Expr rhs = null;
         if (current.type == TokenType.ASSIGN) {
@@ -248,7 +280,7 @@ public class SyntaticAnalysis {
     // <decl-type2> ::= '(' <name> { ',' <name> } ')' '=' <expr>
     private DeclarationType2Command procDeclType2() {
     	eat(TokenType.OPEN_PAR);
-    	int line = lex.getLine();
+    	int line = this.line;
     	Variable var = procName();
     	List<Variable> list = new ArrayList<Variable>();
     	list.add(var);
@@ -277,7 +309,7 @@ public class SyntaticAnalysis {
             showError();
         }
     	
-    	int line = lex.getLine();
+    	int line = this.line;
         eat(TokenType.OPEN_PAR);
         Expr expr = procExpr();
         eat(TokenType.CLOSE_PAR);
@@ -289,7 +321,7 @@ public class SyntaticAnalysis {
     // <if> ::= if '(' <expr> ')' <body> [ else <body> ]
     private IfCommand procIf() {
     	eat(TokenType.IF);
-    	int line = lex.getLine();
+    	int line = this.line;
         eat(TokenType.OPEN_PAR);
         Expr expr = procExpr();
         eat(TokenType.CLOSE_PAR);
@@ -306,7 +338,7 @@ public class SyntaticAnalysis {
     // <while> ::= while '(' <expr> ')' <body>
     private WhileCommand procWhile() {
         eat(TokenType.WHILE);
-        int line = lex.getLine();
+        int line = this.line;
         eat(TokenType.OPEN_PAR);
         Expr expr = procExpr();
         eat(TokenType.CLOSE_PAR);
@@ -318,7 +350,7 @@ public class SyntaticAnalysis {
     // <for> ::= for '(' [ ( <decl> | <assign> ) { ',' ( <decl> | <assign> ) } ] ';' [ <expr> ] ';' [ <assign> { ',' <assign> } ] ')' <body>
     private ForCommand procFor() {
     	eat(TokenType.FOR);
-    	int line = lex.getLine();
+    	int line = this.line;
     	eat(TokenType.OPEN_PAR);
     	List<Command> list = new ArrayList<Command>();
     	List<Command> list2 = new ArrayList<Command>();
@@ -419,7 +451,7 @@ public class SyntaticAnalysis {
     // <foreach> ::= foreach '(' [ def ] <name> in <expr> ')' <body>
     private ForeachCommand procForeach() {
     	eat(TokenType.FOREACH);
-    	int line = lex.getLine();
+    	int line = this.line;
     	eat(TokenType.OPEN_PAR);
     	if(current.type == TokenType.DEF) {
     		advance();
@@ -452,7 +484,7 @@ public class SyntaticAnalysis {
     private AssignCommand procAssign() {
     	Expr left = procExpr();
     	if (!(left instanceof SetExpr))
-            Utils.abort(lex.getLine());
+            Utils.abort(this.line);
     	
     	AssignCommand.Op op = null;
     	if(current.type == TokenType.ASSIGN ||
@@ -498,7 +530,7 @@ public class SyntaticAnalysis {
     	else {
     		showError();
     	}
-    	int line = lex.getLine();
+    	int line = this.line;
     	
     	 Expr right = procExpr();
     	 AssignCommand ac = new AssignCommand(line, (SetExpr) left, op, right);
@@ -518,7 +550,7 @@ public class SyntaticAnalysis {
                 advance();
                 op = BinaryExpr.Op.OrOp;
             }
-            int line = lex.getLine();
+            int line = this.line;
         	Expr right = procRel();
         	BinaryExpr bexpr = new BinaryExpr(line, left, op, right);
             left = bexpr;
@@ -575,7 +607,7 @@ public class SyntaticAnalysis {
         	default:
         		showError();
         	}
-        	int line = lex.getLine();
+        	int line = this.line;
         	Expr right = procCast();
         	BinaryExpr expr = new BinaryExpr(line, left, op, right);
         	return expr;
@@ -588,7 +620,7 @@ public class SyntaticAnalysis {
     	Expr expr = procArith();
         if(current.type == TokenType.AS) {
         	advance();
-        	int line = lex.getLine();
+        	int line = this.line;
         	CastExpr.CastOp op = null;
         	if(current.type == TokenType.BOOLEAN) {
         		advance();
@@ -626,7 +658,7 @@ public class SyntaticAnalysis {
         	}else {
         		showError();
         	}
-        	int line = lex.getLine();
+        	int line = this.line;
         	
         	Expr right = procTerm();
         	BinaryExpr bexpr = new BinaryExpr(line, left, op, right);
@@ -658,7 +690,7 @@ public class SyntaticAnalysis {
         	default:
         		showError();
         	}
-        	int line = lex.getLine();
+        	int line = this.line;
         	Expr right = procPower();
         	BinaryExpr bexpr = new BinaryExpr(line, left, op, right);
             left = bexpr;
@@ -677,7 +709,7 @@ public class SyntaticAnalysis {
 		        while(current.type == TokenType.POWER) {
 		        	advance();
 		        	op  = BinaryExpr.Op.PowerOp;
-		        	list2.add(lex.getLine());
+		        	list2.add(this.line);
 		        	Expr right = procFactor();
 		        	list.add(right);
 		        }
@@ -707,7 +739,7 @@ public class SyntaticAnalysis {
             advance();
             op = UnaryExpr.Op.NegOp;
         }
-    	int line = lex.getLine();
+    	int line = this.line;
     	 
         if (current.type == TokenType.OPEN_PAR) {
             advance();
@@ -728,7 +760,7 @@ public class SyntaticAnalysis {
     // <lvalue> ::= <name> { '.' <name> | '[' <expr> ']' }
     private Expr procLValue() {
     	Expr base = procName();
-        int line = lex.getLine();
+        int line = this.line;
     	while(current.type == TokenType.DOT || current.type == TokenType.OPEN_BRA) {
         	AccessExpr ac = null;
     		if(current.type == TokenType.DOT) {
@@ -762,7 +794,7 @@ public class SyntaticAnalysis {
             case NUMBER:
             case TEXT:
             	Value<?> v = procConst();
-            	int line = lex.getLine();
+            	int line = this.line;
                 ConstExpr ce = new ConstExpr(line, v);
                 expr = ce;
                 break;
@@ -799,11 +831,11 @@ public class SyntaticAnalysis {
             advance();
         } else if (current.type == TokenType.FALSE) {
             advance();
-            BooleanValue bv = new BooleanValue(false);
+            BooleanValue bv = BooleanValue.of(false);
             v = bv;
         } else if (current.type == TokenType.TRUE) {
             advance();
-            BooleanValue bv = new BooleanValue(true);
+            BooleanValue bv = BooleanValue.of(true);
             v = bv;
         } else if (current.type == TokenType.NUMBER) {
         	NumberValue nv = procNumber();
@@ -839,7 +871,7 @@ public class SyntaticAnalysis {
     		showError();
     	}
     	advance();
-    	int line = lex.getLine();
+    	int line = this.line;
     	
     	eat(TokenType.OPEN_PAR);
     	Expr expr = procExpr();
@@ -853,7 +885,7 @@ public class SyntaticAnalysis {
     private SwitchExpr procSwitch() {
     	 eat(TokenType.SWITCH);
          eat(TokenType.OPEN_PAR);
-         int line = lex.getLine();
+         int line = this.line;
          Expr expr = procExpr();
          SwitchExpr se = new SwitchExpr(line, expr);
          eat(TokenType.CLOSE_PAR);
@@ -884,7 +916,7 @@ public class SyntaticAnalysis {
     private Expr procStruct() {
         eat(TokenType.OPEN_BRA);
         List<Expr> list = new ArrayList<Expr>();
-        int line=lex.getLine();
+        int line=this.line;
         MapExpr map = new MapExpr(line);
         if (current.type == TokenType.COLON) {
             advance();
@@ -899,7 +931,7 @@ public class SyntaticAnalysis {
             if (prev.type == TokenType.NAME &&
                     current.type == TokenType.COLON) {
                 rollback();
-                line = lex.getLine();
+                line = this.line;
                 MapItem map_item = new MapItem();
                 Variable var = procName();
                 String str = var.getName();
@@ -924,7 +956,7 @@ public class SyntaticAnalysis {
             } else {
                 rollback();
                 Expr expr = procExpr();
-                line = lex.getLine();
+                line = this.line;
                 list.add(expr);
                 while (current.type == TokenType.COMMA) {
                     advance();
@@ -941,7 +973,7 @@ public class SyntaticAnalysis {
     private Variable procName() {
         String tmp = current.token;
         eat(TokenType.NAME);
-        int line = lex.getLine();
+        int line = this.line;
 
         Variable var = new Variable(line, tmp);
         return var;
@@ -958,7 +990,7 @@ public class SyntaticAnalysis {
              v = 0;
          }
 
-         NumberValue nv = new NumberValue(v);
+         NumberValue nv = NumberValue.of(v);
          return nv;
     }
 
@@ -0,0 +1,14 @@
+package syntatic;
+
+import interpreter.util.InterpreterException;
+
+// Thrown by the parser on an invalid or unexpected lexeme.
+public class SyntaxException extends InterpreterException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SyntaxException(int line, String msg) {
+        super(line, msg);
+    }
+
+}